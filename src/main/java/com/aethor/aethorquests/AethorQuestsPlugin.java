@@ -1,5 +1,9 @@
 package com.aethor.aethorquests;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+
 import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
@@ -11,9 +15,11 @@ import com.aethor.aethorquests.listener.DialogueInputHandler;
 import com.aethor.aethorquests.listener.PlayerListener;
 import com.aethor.aethorquests.manager.DialogueManager;
 import com.aethor.aethorquests.manager.PlayerDataStore;
+import com.aethor.aethorquests.manager.QuestFileWatcher;
 import com.aethor.aethorquests.manager.QuestManager;
 import com.aethor.aethorquests.marker.MarkerHologramController;
 import com.aethor.aethorquests.marker.MarkerUpdateListener;
+import com.aethor.aethorquests.marker.NpcLocationCache;
 import com.aethor.aethorquests.marker.QuestMarkerService;
 import com.aethor.aethorquests.tracker.KillObjectiveTracker;
 import com.aethor.aethorquests.tracker.TalkObjectiveTracker;
@@ -31,6 +37,7 @@ public class AethorQuestsPlugin extends JavaPlugin {
     private QuestManager questManager;
     private PlayerDataStore playerDataStore;
     private DialogueManager dialogueManager;
+    private QuestFileWatcher questFileWatcher;
     
     // UI
     private QuestUI questUI;
@@ -43,8 +50,10 @@ public class AethorQuestsPlugin extends JavaPlugin {
     
     // Trackers
     private TalkObjectiveTracker talkTracker;
+    private KillObjectiveTracker killTracker;
     private VisitObjectiveTracker visitTracker;
     private BukkitTask autoSaveTask;
+    private BukkitTask journalFlushTask;
     
     // Quest Markers
     private QuestMarkerService markerService;
@@ -78,6 +87,18 @@ public class AethorQuestsPlugin extends JavaPlugin {
         // Load quests
         questManager.loadQuests();
         
+        // Reload quests when quest files are edited on disk
+        if (getConfig().getBoolean("quests.watchFile", true)) {
+            questFileWatcher = new QuestFileWatcher(this, new File(getDataFolder(), "quests.yml").toPath(),
+                    new File(getDataFolder(), "quests").toPath(), getConfig().getLong("quests.watchQuietMillis", 500));
+            try {
+                questFileWatcher.start();
+            } catch (IOException e) {
+                getLogger().log(Level.WARNING, "Could not watch quest files for changes", e);
+                questFileWatcher = null;
+            }
+        }
+        
         // Register event listeners
         registerListeners();
         
@@ -119,6 +140,13 @@ public class AethorQuestsPlugin extends JavaPlugin {
             webServer.stop();
         }
         
+        if (questFileWatcher != null) {
+            questFileWatcher.stop();
+        }
+        if (questManager != null) {
+            questManager.shutdown();
+        }
+        
         // Clean up dialogue sessions
         if (dialogueManager != null) {
             dialogueManager.cleanup();
@@ -126,22 +154,31 @@ public class AethorQuestsPlugin extends JavaPlugin {
         
         // Cancel all tasks
         if (visitTracker != null) {
-            visitTracker.cancel();
+            visitTracker.stop();
         }
         if (autoSaveTask != null) {
             autoSaveTask.cancel();
         }
+        if (journalFlushTask != null) {
+            journalFlushTask.cancel();
+        }
+        
+        // Apply kills still buffered for this tick
+        if (killTracker != null) {
+            killTracker.flushPendingKills();
+        }
         
         // Save all player data
         getLogger().info("Saving all player data...");
-        playerDataStore.saveAll();
+        playerDataStore.shutdown();
         
         getLogger().info("AethorQuests disabled.");
     }
     
     private void registerListeners() {
         getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
-        getServer().getPluginManager().registerEvents(new KillObjectiveTracker(this), this);
+        killTracker = new KillObjectiveTracker(this);
+        getServer().getPluginManager().registerEvents(killTracker, this);
         getServer().getPluginManager().registerEvents(new com.aethor.aethorquests.gui.QuestEditorListener(this), this);
         getServer().getPluginManager().registerEvents(new com.aethor.aethorquests.listener.NpcInteractionListener(this), this);
         getServer().getPluginManager().registerEvents(new DialogueInputHandler(this), this);
@@ -174,13 +211,21 @@ public class AethorQuestsPlugin extends JavaPlugin {
         // Auto-save task
         long autoSaveTicks = getConfig().getLong("storage.autoSaveTicks", 6000);
         if (autoSaveTicks > 0) {
-            autoSaveTask = getServer().getScheduler().runTaskTimerAsynchronously(this, () -> {
+            // Snapshots are taken on the main thread and written by the writer thread
+            autoSaveTask = getServer().getScheduler().runTaskTimer(this, () -> {
                 if (debug) {
                     getLogger().info("Auto-saving player data...");
                 }
                 playerDataStore.saveAll();
             }, autoSaveTicks, autoSaveTicks);
         }
+        
+        // Progress journal flush - bounds how much progress a crash can lose
+        long journalFlushTicks = getConfig().getLong("storage.journal.flushIntervalTicks", 20);
+        if (journalFlushTicks > 0) {
+            journalFlushTask = getServer().getScheduler().runTaskTimerAsynchronously(this,
+                    playerDataStore::flushJournal, journalFlushTicks, journalFlushTicks);
+        }
     }
     
     private void logBanner() {
@@ -218,10 +263,22 @@ public class AethorQuestsPlugin extends JavaPlugin {
         return talkTracker;
     }
     
+    public VisitObjectiveTracker getVisitTracker() {
+        return visitTracker;
+    }
+    
+    public KillObjectiveTracker getKillTracker() {
+        return killTracker;
+    }
+    
     public DialogueManager getDialogueManager() {
         return dialogueManager;
     }
     
+    public QuestFileWatcher getQuestFileWatcher() {
+        return questFileWatcher;
+    }
+    
     public boolean isDebug() {
         return debug;
     }
@@ -235,11 +292,13 @@ public class AethorQuestsPlugin extends JavaPlugin {
      */
     private void initializeMarkerSystem() {
         markerService = new QuestMarkerService(this);
-        markerController = new MarkerHologramController(this, markerService);
+        NpcLocationCache npcLocationCache = new NpcLocationCache(this);
+        markerController = new MarkerHologramController(this, markerService, npcLocationCache);
         
         // Register marker update listener
         getServer().getPluginManager().registerEvents(
             new MarkerUpdateListener(this, markerController), this);
+        getServer().getPluginManager().registerEvents(npcLocationCache, this);
         
         // Start the marker system
         markerController.start();
@@ -25,6 +25,9 @@ import net.kyori.adventure.text.format.NamedTextColor;
 public class QuestAdminCommand implements CommandExecutor, TabCompleter {
     private final AethorQuestsPlugin plugin;
     
+    // Names listed by /questadmin who before the rest is summarized
+    private static final int WHO_MAX_LISTED = 50;
+    
     public QuestAdminCommand(AethorQuestsPlugin plugin) {
         this.plugin = plugin;
     }
@@ -60,8 +63,13 @@ public class QuestAdminCommand implements CommandExecutor, TabCompleter {
             }
             
             case "reload" -> {
-                plugin.getQuestManager().reload();
-                sender.sendMessage(Component.text("Quests reloaded successfully!", NamedTextColor.GREEN));
+                plugin.getQuestManager().reload().whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        sender.sendMessage(Component.text("Failed to reload quests, check the console.", NamedTextColor.RED));
+                    } else {
+                        sender.sendMessage(Component.text("Quests reloaded successfully!", NamedTextColor.GREEN));
+                    }
+                });
             }
             
             case "give", "assign" -> {
@@ -110,6 +118,15 @@ public class QuestAdminCommand implements CommandExecutor, TabCompleter {
                 handleQuestInfo(sender, args[1], args[2]);
             }
             
+            case "who" -> {
+                if (args.length < 2) {
+                    sender.sendMessage(Component.text("Usage: /questadmin who <questId> [status]", NamedTextColor.RED));
+                    return true;
+                }
+                
+                handleWho(sender, args[1], args.length >= 3 ? args[2] : QuestStatus.TURNED_IN.name());
+            }
+            
             default -> sendHelp(sender);
         }
         
@@ -130,17 +147,19 @@ public class QuestAdminCommand implements CommandExecutor, TabCompleter {
         }
         
         UUID playerId = target.getUniqueId();
-        PlayerQuestState state = plugin.getPlayerDataStore().getOrCreateQuestState(playerId, questId);
-        state.setStatus(QuestStatus.ACTIVE);
-        plugin.getPlayerDataStore().setQuestState(playerId, state);
+        plugin.getPlayerDataStore().withPlayerData(playerId, () -> {
+            PlayerQuestState state = plugin.getPlayerDataStore().getOrCreateQuestState(playerId, questId);
+            state.setStatus(QuestStatus.ACTIVE);
+            plugin.getPlayerDataStore().setQuestState(playerId, state);
         
-        sender.sendMessage(Component.text("Quest ", NamedTextColor.GREEN)
-                .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW))
-                .append(Component.text(" given to ", NamedTextColor.GREEN))
-                .append(Component.text(target.getName(), NamedTextColor.WHITE)));
+            sender.sendMessage(Component.text("Quest ", NamedTextColor.GREEN)
+                    .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW))
+                    .append(Component.text(" given to ", NamedTextColor.GREEN))
+                    .append(Component.text(target.getName(), NamedTextColor.WHITE)));
         
-        target.sendMessage(Component.text("An administrator has given you the quest: ", NamedTextColor.GREEN)
-                .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW)));
+            target.sendMessage(Component.text("An administrator has given you the quest: ", NamedTextColor.GREEN)
+                    .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW)));
+        });
     }
     
     private void handleCompleteQuest(CommandSender sender, String playerName, String questId) {
@@ -165,20 +184,22 @@ public class QuestAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        PlayerQuestState state = plugin.getPlayerDataStore().getOrCreateQuestState(playerId, questId);
-        state.setStatus(QuestStatus.COMPLETED);
-        state.setObjectiveIndex(quest.getObjectives().size() - 1);
-        plugin.getPlayerDataStore().setQuestState(playerId, state);
+        plugin.getPlayerDataStore().withPlayerData(playerId, () -> {
+            PlayerQuestState state = plugin.getPlayerDataStore().getOrCreateQuestState(playerId, questId);
+            state.setStatus(QuestStatus.COMPLETED);
+            state.setObjectiveIndex(quest.getObjectives().size() - 1);
+            plugin.getPlayerDataStore().setQuestState(playerId, state);
         
-        sender.sendMessage(Component.text("Quest ", NamedTextColor.GREEN)
-                .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW))
-                .append(Component.text(" marked as completed for ", NamedTextColor.GREEN))
-                .append(Component.text(playerName, NamedTextColor.WHITE)));
+            sender.sendMessage(Component.text("Quest ", NamedTextColor.GREEN)
+                    .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW))
+                    .append(Component.text(" marked as completed for ", NamedTextColor.GREEN))
+                    .append(Component.text(playerName, NamedTextColor.WHITE)));
         
-        if (target != null) {
-            target.sendMessage(Component.text("An administrator has completed your quest: ", NamedTextColor.GREEN)
-                    .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW)));
-        }
+            if (target != null) {
+                target.sendMessage(Component.text("An administrator has completed your quest: ", NamedTextColor.GREEN)
+                        .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW)));
+            }
+        });
     }
     
     private void handleResetQuest(CommandSender sender, String playerName, String questId) {
@@ -202,18 +223,20 @@ public class QuestAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        PlayerQuestState state = plugin.getPlayerDataStore().getQuestState(playerId, questId);
-        if (state != null) {
-            state.setStatus(QuestStatus.NOT_STARTED);
-            state.setObjectiveIndex(0);
-            state.setObjectiveProgress(0);
-            plugin.getPlayerDataStore().setQuestState(playerId, state);
-        }
+        plugin.getPlayerDataStore().withPlayerData(playerId, () -> {
+            PlayerQuestState state = plugin.getPlayerDataStore().lookupQuestState(playerId, questId);
+            if (state != null) {
+                state.setStatus(QuestStatus.NOT_STARTED);
+                state.setObjectiveIndex(0);
+                state.setObjectiveProgress(0);
+                plugin.getPlayerDataStore().setQuestState(playerId, state);
+            }
         
-        sender.sendMessage(Component.text("Quest ", NamedTextColor.GREEN)
-                .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW))
-                .append(Component.text(" reset for ", NamedTextColor.GREEN))
-                .append(Component.text(playerName, NamedTextColor.WHITE)));
+            sender.sendMessage(Component.text("Quest ", NamedTextColor.GREEN)
+                    .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW))
+                    .append(Component.text(" reset for ", NamedTextColor.GREEN))
+                    .append(Component.text(playerName, NamedTextColor.WHITE)));
+        });
     }
     
     private void handleQuestInfo(CommandSender sender, String playerName, String questId) {
@@ -237,25 +260,73 @@ public class QuestAdminCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        PlayerQuestState state = plugin.getPlayerDataStore().getQuestState(playerId, questId);
+        plugin.getPlayerDataStore().withPlayerData(playerId, () -> {
+            PlayerQuestState state = plugin.getPlayerDataStore().lookupQuestState(playerId, questId);
         
-        sender.sendMessage(Component.text("Quest Info for ", NamedTextColor.GOLD)
-                .append(Component.text(playerName, NamedTextColor.WHITE))
-                .append(Component.text(":", NamedTextColor.GOLD)));
-        sender.sendMessage(Component.text("  Quest: ", NamedTextColor.GRAY)
-                .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW)));
+            sender.sendMessage(Component.text("Quest Info for ", NamedTextColor.GOLD)
+                    .append(Component.text(playerName, NamedTextColor.WHITE))
+                    .append(Component.text(":", NamedTextColor.GOLD)));
+            sender.sendMessage(Component.text("  Quest: ", NamedTextColor.GRAY)
+                    .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW)));
         
-        if (state == null) {
-            sender.sendMessage(Component.text("  Status: ", NamedTextColor.GRAY)
-                    .append(Component.text("NOT_STARTED", NamedTextColor.WHITE)));
-        } else {
-            sender.sendMessage(Component.text("  Status: ", NamedTextColor.GRAY)
-                    .append(Component.text(state.getStatus().name(), NamedTextColor.WHITE)));
-            sender.sendMessage(Component.text("  Objective Index: ", NamedTextColor.GRAY)
-                    .append(Component.text(String.valueOf(state.getObjectiveIndex()), NamedTextColor.WHITE)));
-            sender.sendMessage(Component.text("  Progress: ", NamedTextColor.GRAY)
-                    .append(Component.text(String.valueOf(state.getObjectiveProgress()), NamedTextColor.WHITE)));
+            if (state == null) {
+                sender.sendMessage(Component.text("  Status: ", NamedTextColor.GRAY)
+                        .append(Component.text("NOT_STARTED", NamedTextColor.WHITE)));
+            } else {
+                sender.sendMessage(Component.text("  Status: ", NamedTextColor.GRAY)
+                        .append(Component.text(state.getStatus().name(), NamedTextColor.WHITE)));
+                sender.sendMessage(Component.text("  Objective Index: ", NamedTextColor.GRAY)
+                        .append(Component.text(String.valueOf(state.getObjectiveIndex()), NamedTextColor.WHITE)));
+                sender.sendMessage(Component.text("  Progress: ", NamedTextColor.GRAY)
+                        .append(Component.text(String.valueOf(state.getObjectiveProgress()), NamedTextColor.WHITE)));
+            }
+        });
+    }
+    
+    private void handleWho(CommandSender sender, String questId, String statusName) {
+        QuestDefinition quest = plugin.getQuestManager().getQuest(questId);
+        if (quest == null) {
+            sender.sendMessage(Component.text("Quest not found: " + questId, NamedTextColor.RED));
+            return;
+        }
+        
+        QuestStatus status;
+        try {
+            status = QuestStatus.valueOf(statusName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage(Component.text("Unknown status: " + statusName, NamedTextColor.RED));
+            return;
         }
+        
+        sender.sendMessage(Component.text("Looking up players...", NamedTextColor.GRAY));
+        boolean complete = plugin.getPlayerDataStore().isFindComplete();
+        
+        plugin.getPlayerDataStore().findPlayers(quest.getId(), status, players -> {
+            if (players == null) {
+                sender.sendMessage(Component.text("Lookup failed, see the console for details.", NamedTextColor.RED));
+                return;
+            }
+            
+            if (!complete) {
+                sender.sendMessage(Component.text("Player data is still being imported, these results are incomplete.", NamedTextColor.YELLOW));
+            }
+            
+            sender.sendMessage(Component.text("Players with ", NamedTextColor.GOLD)
+                    .append(Component.text(quest.getTitle(), NamedTextColor.YELLOW))
+                    .append(Component.text(" " + status.name() + " (" + players.size() + "):", NamedTextColor.GOLD)));
+            
+            int shown = 0;
+            for (UUID playerId : players) {
+                if (shown++ == WHO_MAX_LISTED) {
+                    sender.sendMessage(Component.text("  ...and " + (players.size() - WHO_MAX_LISTED) + " more", NamedTextColor.GRAY));
+                    break;
+                }
+                
+                String name = Bukkit.getOfflinePlayer(playerId).getName();
+                sender.sendMessage(Component.text("  • ", NamedTextColor.GRAY)
+                        .append(Component.text(name != null ? name : playerId.toString(), NamedTextColor.WHITE)));
+            }
+        });
     }
     
     private void sendHelp(CommandSender sender) {
@@ -277,6 +348,8 @@ public class QuestAdminCommand implements CommandExecutor, TabCompleter {
                 .append(Component.text(" - List all quests", NamedTextColor.GRAY)));
         sender.sendMessage(Component.text("/questadmin info <player> <id>", NamedTextColor.YELLOW)
                 .append(Component.text(" - View player quest info", NamedTextColor.GRAY)));
+        sender.sendMessage(Component.text("/questadmin who <id> [status]", NamedTextColor.YELLOW)
+                .append(Component.text(" - List players with a quest in a status", NamedTextColor.GRAY)));
         sender.sendMessage(Component.empty());
     }
     
@@ -292,6 +365,17 @@ public class QuestAdminCommand implements CommandExecutor, TabCompleter {
             completions.add("reset");
             completions.add("list");
             completions.add("info");
+            completions.add("who");
+        } else if (args[0].equalsIgnoreCase("who")) {
+            if (args.length == 2) {
+                for (QuestDefinition quest : plugin.getQuestManager().getAllQuests()) {
+                    completions.add(quest.getId());
+                }
+            } else if (args.length == 3) {
+                for (QuestStatus status : QuestStatus.values()) {
+                    completions.add(status.name());
+                }
+            }
         } else if (args.length == 2) {
             // Player names
             for (Player player : Bukkit.getOnlinePlayers()) {
@@ -120,8 +120,13 @@ public class QuestCommand implements CommandExecutor, TabCompleter {
                     return true;
                 }
                 
-                plugin.getQuestManager().reload();
-                player.sendMessage(Component.text("Quests reloaded!", NamedTextColor.GREEN));
+                plugin.getQuestManager().reload().whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        player.sendMessage(Component.text("Failed to reload quests, check the console.", NamedTextColor.RED));
+                    } else {
+                        player.sendMessage(Component.text("Quests reloaded!", NamedTextColor.GREEN));
+                    }
+                });
             }
             
             default -> {
@@ -156,11 +161,9 @@ public class QuestCommand implements CommandExecutor, TabCompleter {
             return;
         }
         
-        for (String requiredQuestId : req.getRequiredQuestsCompleted()) {
-            if (!plugin.getPlayerDataStore().hasCompletedQuest(playerId, requiredQuestId)) {
-                player.sendMessage(Component.text("You must complete other quests first.", NamedTextColor.RED));
-                return;
-            }
+        if (!plugin.getPlayerDataStore().hasCompletedRequiredQuests(playerId, req)) {
+            player.sendMessage(Component.text("You must complete other quests first.", NamedTextColor.RED));
+            return;
         }
         
         // Accept quest
@@ -112,6 +112,11 @@ public class QuestEditorListener implements Listener {
                     } else {
                         // Edit quest
                         new QuestDetailsEditorGUI(plugin, player, npcId, quest).open();
+                        
+                        // Opening closed the previous menu, which may have dropped the session
+                        EditorSession editing = editorSessions.computeIfAbsent(player.getUniqueId(), k -> new EditorSession());
+                        editing.npcId = npcId;
+                        editing.currentQuest = quest;
                     }
                 }
             }
@@ -150,13 +155,11 @@ public class QuestEditorListener implements Listener {
                     }
                     
                     // Save changes
-                    fileManager.saveAllQuests();
+                    fileManager.updateQuest(quest);
                     
-                    // Reload quest manager to reflect changes
-                    plugin.getQuestManager().reload();
-                    
-                    // Reopen GUI to show updated state
-                    new QuestAssignmentGUI(plugin, player, npcId).open();
+                    // Reload quest manager to reflect changes, then reopen GUI to show updated state
+                    plugin.getQuestManager().reload().thenRun(() ->
+                        new QuestAssignmentGUI(plugin, player, npcId).open());
                 }
             }
         }
@@ -173,8 +176,18 @@ public class QuestEditorListener implements Listener {
             }
         }
         else if (displayText.contains("Save Changes")) {
+            EditorSession session = editorSessions.get(player.getUniqueId());
+            QuestDefinition quest = session != null && session.currentQuest != null
+                    ? plugin.getQuestManager().getQuest(session.currentQuest.getId()) : null;
+            if (quest == null) {
+                player.sendMessage(Component.text("✗ Could not tell which quest to save, reopen it from the editor", NamedTextColor.RED));
+                player.closeInventory();
+                return;
+            }
+            
+            // Write only the file the edited quest lives in
+            fileManager.updateQuest(quest);
             player.sendMessage(Component.text("✓ Quest saved to file!", NamedTextColor.GREEN));
-            fileManager.saveAllQuests();
             player.closeInventory();
         }
         else if (displayText.contains("Edit Title")) {
@@ -260,16 +273,15 @@ public class QuestEditorListener implements Listener {
                 QuestCreatorGUI creator = new QuestCreatorGUI(plugin, player, session.npcId);
                 QuestDefinition newQuest = creator.createQuest(input);
                 
-                // Save the quest
-                fileManager.addQuest(newQuest);
-                plugin.getQuestManager().reload();
-                
                 player.sendMessage(Component.text("✓ Quest created: " + newQuest.getTitle(), NamedTextColor.GREEN));
                 session.awaitingInput = false;
                 
-                // Reopen editor
-                plugin.getServer().getScheduler().runTask(plugin, () -> 
-                    new QuestEditorGUI(plugin, player, session.npcId).open());
+                // Save the quest, then reopen the editor once it is reloaded
+                plugin.getServer().getScheduler().runTask(plugin, () -> {
+                    fileManager.addQuest(newQuest);
+                    plugin.getQuestManager().reload().thenRun(() ->
+                        new QuestEditorGUI(plugin, player, session.npcId).open());
+                });
             }
             case "enter_npc_id" -> {
                 // Create quest editor for the entered NPC ID
@@ -329,13 +341,12 @@ public class QuestEditorListener implements Listener {
     
     private void deleteQuest(Player player, QuestDefinition quest, String npcId) {
         fileManager.removeQuest(quest.getId());
-        plugin.getQuestManager().reload();
         
         player.sendMessage(Component.text("✓ Quest deleted: " + quest.getTitle(), NamedTextColor.RED));
         player.closeInventory();
         
-        // Reopen editor
-        plugin.getServer().getScheduler().runTask(plugin, () -> 
+        // Reopen editor once the quest is gone from the reloaded quests
+        plugin.getQuestManager().reload().thenRun(() ->
             new QuestEditorGUI(plugin, player, npcId).open());
     }
     
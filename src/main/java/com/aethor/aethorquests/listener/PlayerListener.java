@@ -2,10 +2,15 @@ package com.aethor.aethorquests.listener;
 
 import com.aethor.aethorquests.AethorQuestsPlugin;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.util.UUID;
+
 /**
  * Handles player join/quit events for data loading/saving
  */
@@ -16,12 +21,32 @@ public class PlayerListener implements Listener {
         this.plugin = plugin;
     }
     
-    @EventHandler
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        
+        // Already off the main thread - read the data here so it is ready before the join
+        plugin.getPlayerDataStore().prefetchPlayerData(event.getUniqueId());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            plugin.getPlayerDataStore().discardPrefetchedData(event.getPlayer().getUniqueId());
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.LOWEST)
     public void onPlayerJoin(PlayerJoinEvent event) {
-        // Load player data asynchronously to avoid blocking login
-        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-            plugin.getPlayerDataStore().loadPlayerData(event.getPlayer().getUniqueId());
-        });
+        UUID playerId = event.getPlayer().getUniqueId();
+        if (plugin.getPlayerDataStore().promotePlayerData(playerId)) {
+            return;
+        }
+        
+        // Nothing was prefetched (e.g. the plugin was enabled mid-login) - read asynchronously to avoid blocking
+        plugin.getPlayerDataStore().loadPlayerData(playerId);
     }
     
     @EventHandler
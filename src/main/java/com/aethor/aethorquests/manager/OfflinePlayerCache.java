@@ -0,0 +1,93 @@
+package com.aethor.aethorquests.manager;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of the quest data of players who are not online,
+ * e.g. targets of admin commands. Misses are read through from storage and
+ * the least recently used entry is handed to the eviction handler, which
+ * queues it for saving if it changed.
+ */
+class OfflinePlayerCache {
+    private final int maxSize;
+    private final Function<UUID, PlayerQuestData> loader;
+    private final BiConsumer<UUID, PlayerQuestData> evictionHandler;
+    
+    // Access order, so the eldest entry is the least recently used
+    private final LinkedHashMap<UUID, PlayerQuestData> entries;
+    
+    OfflinePlayerCache(int maxSize, Function<UUID, PlayerQuestData> loader, BiConsumer<UUID, PlayerQuestData> evictionHandler) {
+        this.maxSize = Math.max(1, maxSize);
+        this.loader = loader;
+        this.evictionHandler = evictionHandler;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, PlayerQuestData> eldest) {
+                if (size() <= OfflinePlayerCache.this.maxSize) {
+                    return false;
+                }
+                
+                OfflinePlayerCache.this.evictionHandler.accept(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+    
+    /**
+     * Get a player's data, loading it from storage on a miss
+     */
+    synchronized PlayerQuestData get(UUID playerId) {
+        PlayerQuestData data = entries.get(playerId);
+        if (data == null) {
+            data = loader.apply(playerId);
+            entries.put(playerId, data);
+        }
+        return data;
+    }
+    
+    /**
+     * Get a player's data if it is cached, without loading them
+     *
+     * @return The cached data, or null on a miss
+     */
+    synchronized PlayerQuestData peek(UUID playerId) {
+        return entries.get(playerId);
+    }
+    
+    /**
+     * Check whether a player is cached, without loading them
+     */
+    synchronized boolean contains(UUID playerId) {
+        return entries.containsKey(playerId);
+    }
+    
+    /**
+     * Cache data read elsewhere, unless the player is already cached
+     */
+    synchronized void putIfAbsent(UUID playerId, PlayerQuestData data) {
+        if (!entries.containsKey(playerId)) {
+            entries.put(playerId, data);
+        }
+    }
+    
+    /**
+     * Remove a player without evicting, e.g. because they came online
+     *
+     * @return The cached data, or null if the player was not cached
+     */
+    synchronized PlayerQuestData remove(UUID playerId) {
+        return entries.remove(playerId);
+    }
+    
+    /**
+     * Get a copy of all cached entries
+     */
+    synchronized Map<UUID, PlayerQuestData> getEntries() {
+        return new HashMap<>(entries);
+    }
+}
@@ -2,15 +2,23 @@ package com.aethor.aethorquests.manager;
 
 import com.aethor.aethorquests.AethorQuestsPlugin;
 import com.aethor.aethorquests.model.PlayerQuestState;
+import com.aethor.aethorquests.model.QuestOrdinals;
+import com.aethor.aethorquests.model.QuestRequirements;
+import com.aethor.aethorquests.model.QuestStateTable;
 import com.aethor.aethorquests.model.QuestStatus;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
+import com.aethor.aethorquests.storage.BinaryPlayerStorage;
+import com.aethor.aethorquests.storage.PlayerStorage;
+import com.aethor.aethorquests.storage.ProgressJournal;
+import com.aethor.aethorquests.storage.RegionPlayerStorage;
+import com.aethor.aethorquests.storage.SqlitePlayerStorage;
+import com.aethor.aethorquests.storage.YamlPlayerStorage;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 /**
@@ -19,7 +27,17 @@ import java.util.logging.Level;
 public class PlayerDataStore {
     private final AethorQuestsPlugin plugin;
     private final File playerDataFolder;
-    private final Map<UUID, Map<String, PlayerQuestState>> playerData;
+    private final Map<UUID, PlayerQuestData> playerData;
+    
+    // Data read during pre-login, waiting for the player to join
+    private final Map<UUID, PlayerQuestData> stagedData = new ConcurrentHashMap<>();
+    
+    // Players who are not online but were looked up, e.g. by admin commands
+    private final OfflinePlayerCache offlineCache;
+    
+    private final PlayerStorage storage;
+    private final PlayerSaveQueue saveQueue;
+    private final ProgressJournal journal;
     
     public PlayerDataStore(AethorQuestsPlugin plugin) {
         this.plugin = plugin;
@@ -29,179 +47,584 @@ public class PlayerDataStore {
         if (!playerDataFolder.exists()) {
             playerDataFolder.mkdirs();
         }
+        
+        this.storage = createStorage(plugin.getConfig().getString("storage.format", "YAML"));
+        // Bring in players who have not joined since the format was switched, so lookups see them
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, storage::importLegacyData);
+        
+        this.saveQueue = new PlayerSaveQueue(plugin, storage, plugin.getConfig().getLong("storage.groupCommitMillis", 50),
+                plugin.getConfig().getInt("storage.saveThreads", 4));
+        this.saveQueue.start();
+        
+        this.offlineCache = new OfflinePlayerCache(plugin.getConfig().getInt("storage.offlineCacheSize", 100),
+                this::readPlayerData, this::saveEvicted);
+        
+        this.journal = openJournal();
     }
     
     /**
-     * Load player data from disk
+     * Create the configured storage backend.
+     * YAML is the default. BINARY migrates existing .yml files on first load, SQLITE and REGION migrate .dat and .yml files.
      */
-    public void loadPlayerData(UUID playerId) {
-        File playerFile = getPlayerFile(playerId);
+    private PlayerStorage createStorage(String format) {
+        if (format.equalsIgnoreCase("BINARY")) {
+            return new BinaryPlayerStorage(plugin, playerDataFolder);
+        }
         
-        if (!playerFile.exists()) {
-            playerData.put(playerId, new ConcurrentHashMap<>());
-            return;
+        if (format.equalsIgnoreCase("REGION")) {
+            return new RegionPlayerStorage(plugin, playerDataFolder);
+        }
+        
+        if (format.equalsIgnoreCase("SQLITE")) {
+            try {
+                return new SqlitePlayerStorage(plugin, playerDataFolder);
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to open the player database, falling back to BINARY storage", e);
+                return new BinaryPlayerStorage(plugin, playerDataFolder);
+            }
+        }
+        
+        return new YamlPlayerStorage(playerDataFolder);
+    }
+    
+    /**
+     * Replay what a previous run left in the progress journal, then start a new segment
+     *
+     * @return The journal, or null if it is disabled or could not be opened
+     */
+    private ProgressJournal openJournal() {
+        if (!plugin.getConfig().getBoolean("storage.journal.enabled", true)) {
+            return null;
+        }
+        
+        ProgressJournal journal = new ProgressJournal(new File(playerDataFolder, "journal"),
+                plugin.getConfig().getBoolean("storage.journal.fsync", false));
+        
+        try {
+            ProgressJournal.Recovery recovery = journal.recover();
+            if (!recovery.isEmpty()) {
+                for (UUID playerId : recovery.getPlayerIds()) {
+                    Map<String, PlayerQuestState> questStates = storage.load(playerId);
+                    if (questStates == null) {
+                        questStates = new ConcurrentHashMap<>();
+                    }
+                    recovery.applyTo(playerId, questStates);
+                    storage.save(playerId, questStates.values());
+                }
+                plugin.getLogger().info("Recovered quest progress of " + recovery.getPlayerIds().size() + " player(s) from the journal");
+            }
+            journal.deleteAllSegments();
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to replay the progress journal, moving it aside", e);
+            journal.quarantineSegments();
         }
         
         try {
-            FileConfiguration config = YamlConfiguration.loadConfiguration(playerFile);
-            Map<String, PlayerQuestState> questStates = new ConcurrentHashMap<>();
+            journal.open();
+            return journal;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to open the progress journal, continuing without it", e);
+            return null;
+        }
+    }
+    
+    /**
+     * Load player data from disk (call on the main thread).
+     * The data is read asynchronously and made live on the main thread.
+     */
+    public void loadPlayerData(UUID playerId) {
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            PlayerQuestData data = readPlayerData(playerId);
+            if (!plugin.isEnabled()) {
+                return;
+            }
             
-            ConfigurationSection questsSection = config.getConfigurationSection("quests");
-            if (questsSection != null) {
-                for (String questId : questsSection.getKeys(false)) {
-                    ConfigurationSection questSection = questsSection.getConfigurationSection(questId);
-                    if (questSection == null) continue;
-                    
-                    PlayerQuestState state = new PlayerQuestState(questId);
-                    state.setStatus(QuestStatus.valueOf(questSection.getString("status", "NOT_STARTED")));
-                    state.setObjectiveIndex(questSection.getInt("objectiveIndex", 0));
-                    state.setObjectiveProgress(questSection.getInt("objectiveProgress", 0));
-                    state.setAcceptedTimestamp(questSection.getLong("acceptedTimestamp", 0));
-                    state.setCompletedTimestamp(questSection.getLong("completedTimestamp", 0));
-                    state.setTurnedInTimestamp(questSection.getLong("turnedInTimestamp", 0));
-                    
-                    questStates.put(questId, state);
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                // Left while loading, or promoted from a prefetch in the meantime
+                if (plugin.getServer().getPlayer(playerId) == null || playerData.containsKey(playerId)) {
+                    return;
                 }
+                install(playerId, data);
+            });
+        });
+    }
+    
+    /**
+     * Read a player's data ahead of their join (call from AsyncPlayerPreLoginEvent).
+     * The data is staged until {@link #promotePlayerData} so nothing sees a player who never joins.
+     */
+    public void prefetchPlayerData(UUID playerId) {
+        // Still loaded from an earlier session (saveOnQuit is off) - memory is newer than disk
+        if (playerData.containsKey(playerId)) {
+            return;
+        }
+        
+        stagedData.put(playerId, readPlayerData(playerId));
+    }
+    
+    /**
+     * Make prefetched data live (call on join)
+     *
+     * @return False if nothing was prefetched and the data still has to be loaded
+     */
+    public boolean promotePlayerData(UUID playerId) {
+        PlayerQuestData data = stagedData.remove(playerId);
+        if (data == null) {
+            return playerData.containsKey(playerId);
+        }
+        
+        install(playerId, data);
+        return true;
+    }
+    
+    /**
+     * Drop prefetched data of a login that was refused
+     */
+    public void discardPrefetchedData(UUID playerId) {
+        stagedData.remove(playerId);
+    }
+    
+    /**
+     * Read a player's data without making it visible.
+     * A save that has not reached the disk yet is preferred over the stored data.
+     */
+    private PlayerQuestData readPlayerData(UUID playerId) {
+        try {
+            PlayerSnapshot unwritten = saveQueue.getUnwritten(playerId);
+            if (unwritten != null) {
+                return new PlayerQuestData(unwritten.copyStates());
             }
             
-            playerData.put(playerId, questStates);
+            Map<String, PlayerQuestState> questStates = storage.load(playerId);
+            if (questStates == null) {
+                return new PlayerQuestData();
+            }
+            
+            // Loading goes through the setters - that is not a change to journal
+            for (PlayerQuestState state : questStates.values()) {
+                state.clearChangedFields();
+            }
             
             if (plugin.isDebug()) {
                 plugin.getLogger().info("Loaded data for player " + playerId + " (" + questStates.size() + " quests)");
             }
             
+            return new PlayerQuestData(questStates);
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to load player data for " + playerId, e);
-            playerData.put(playerId, new ConcurrentHashMap<>());
+            return new PlayerQuestData();
+        }
+    }
+    
+    /**
+     * Make a player's data live and subscribe their KILL and VISIT objectives (main thread only)
+     */
+    private void install(UUID playerId, PlayerQuestData data) {
+        // A cached offline copy was read from the same storage and may carry admin changes
+        PlayerQuestData cached = offlineCache.remove(playerId);
+        if (cached != null) {
+            data = cached;
+        }
+        
+        playerData.put(playerId, data);
+        
+        if (plugin.getKillTracker() != null) {
+            plugin.getKillTracker().getSubscriptions().addPlayer(playerId, data.getStates());
+        }
+        if (plugin.getVisitTracker() != null) {
+            plugin.getVisitTracker().addPlayer(playerId, data.getStates());
         }
     }
     
     /**
-     * Save player data to disk
+     * Queue player data for saving if it changed since the last save.
+     * Returns immediately - the write happens on the writer thread.
      */
     public void savePlayerData(UUID playerId) {
-        Map<String, PlayerQuestState> questStates = playerData.get(playerId);
-        if (questStates == null || questStates.isEmpty()) {
-            return;
+        PlayerSnapshot snapshot = snapshot(playerId);
+        if (snapshot != null) {
+            saveQueue.enqueue(snapshot);
+        }
+    }
+    
+    /**
+     * Queue all changed player data for saving
+     *
+     * @return The number of players queued
+     */
+    public int saveAll() {
+        // Everything journaled so far is covered by the snapshots taken below.
+        // Only marks the segment boundary - the segment file is sealed on the writer thread.
+        long sealedSegment = journal != null ? journal.markBoundary() : -1;
+        if (sealedSegment >= 0) {
+            saveQueue.enqueueBeforeWrite(this::sealJournal);
         }
         
-        File playerFile = getPlayerFile(playerId);
-        FileConfiguration config = new YamlConfiguration();
+        List<PlayerSnapshot> snapshots = snapshotDirty();
+        for (PlayerSnapshot snapshot : snapshots) {
+            saveQueue.enqueue(snapshot);
+        }
         
-        for (Map.Entry<String, PlayerQuestState> entry : questStates.entrySet()) {
-            String questId = entry.getKey();
-            PlayerQuestState state = entry.getValue();
-            
-            String path = "quests." + questId;
-            config.set(path + ".status", state.getStatus().name());
-            config.set(path + ".objectiveIndex", state.getObjectiveIndex());
-            config.set(path + ".objectiveProgress", state.getObjectiveProgress());
-            config.set(path + ".acceptedTimestamp", state.getAcceptedTimestamp());
-            config.set(path + ".completedTimestamp", state.getCompletedTimestamp());
-            config.set(path + ".turnedInTimestamp", state.getTurnedInTimestamp());
+        // Compact: once those snapshots are on disk the sealed journal segments are redundant
+        if (sealedSegment >= 0) {
+            saveQueue.enqueueCheckpoint(() -> journal.deleteSegmentsUpTo(sealedSegment));
+        }
+        return snapshots.size();
+    }
+    
+    /**
+     * Write journaled progress to disk. Safe to call from any thread.
+     */
+    public void flushJournal() {
+        if (journal == null) {
+            return;
         }
         
         try {
-            config.save(playerFile);
-            
-            if (plugin.isDebug()) {
-                plugin.getLogger().info("Saved data for player " + playerId);
-            }
+            journal.flush();
         } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to save player data for " + playerId, e);
+            plugin.getLogger().log(Level.SEVERE, "Failed to write the progress journal", e);
+        }
+    }
+    
+    private void sealJournal() {
+        try {
+            journal.sealSegments();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to seal the progress journal", e);
+        }
+    }
+    
+    /**
+     * Capture a snapshot of a player's data if it changed since the last save.
+     * Must be called on the main thread, where quest states are modified.
+     *
+     * @return The snapshot, or null if there is nothing to save
+     */
+    public PlayerSnapshot snapshot(UUID playerId) {
+        PlayerQuestData data = playerData.get(playerId);
+        return data != null ? snapshot(playerId, data) : null;
+    }
+    
+    private PlayerSnapshot snapshot(UUID playerId, PlayerQuestData data) {
+        if (!data.isDirty() || data.getStates().isEmpty()) {
+            return null;
         }
+        
+        // Read the version first so changes made after the snapshot keep the player dirty
+        long version = data.getVersion();
+        return new PlayerSnapshot(playerId, data, version, data.getStates().copy());
     }
     
     /**
-     * Save all player data
+     * Capture snapshots of all players whose data changed since their last save.
+     * Must be called on the main thread.
      */
-    public void saveAll() {
+    public List<PlayerSnapshot> snapshotDirty() {
+        List<PlayerSnapshot> snapshots = new ArrayList<>();
         for (UUID playerId : playerData.keySet()) {
-            savePlayerData(playerId);
+            PlayerSnapshot snapshot = snapshot(playerId);
+            if (snapshot != null) {
+                snapshots.add(snapshot);
+            }
+        }
+        
+        for (Map.Entry<UUID, PlayerQuestData> entry : offlineCache.getEntries().entrySet()) {
+            PlayerSnapshot snapshot = snapshot(entry.getKey(), entry.getValue());
+            if (snapshot != null) {
+                snapshots.add(snapshot);
+            }
+        }
+        return snapshots;
+    }
+    
+    /**
+     * Write-behind for the offline cache: queue an evicted entry if it changed
+     */
+    private void saveEvicted(UUID playerId, PlayerQuestData data) {
+        PlayerSnapshot snapshot = snapshot(playerId, data);
+        if (snapshot != null) {
+            saveQueue.enqueue(snapshot);
+        }
+    }
+    
+    /**
+     * Write all changed player data and stop the writer thread (call on disable)
+     */
+    public void shutdown() {
+        long start = System.nanoTime();
+        int queued = saveAll();
+        long snapshotted = System.nanoTime();
+        
+        long timeoutMillis = plugin.getConfig().getLong("storage.shutdownTimeoutSeconds", 30) * 1000L;
+        // Closed by the writer thread instead if it is still writing after the timeout
+        boolean written = saveQueue.shutdown(timeoutMillis, this::closeStorage);
+        long closed = System.nanoTime();
+        
+        plugin.getLogger().info("Saved " + queued + " player(s) on shutdown" + (written ? "" : " (incomplete)")
+                + ": snapshot " + TimeUnit.NANOSECONDS.toMillis(snapshotted - start) + "ms"
+                + ", write and close " + TimeUnit.NANOSECONDS.toMillis(closed - snapshotted) + "ms");
+    }
+    
+    private void closeStorage() {
+        try {
+            storage.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, "Failed to close player storage", e);
+        }
+        
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to close the progress journal", e);
+            }
         }
     }
     
+    /**
+     * Find all players that have a quest in the given status, online or not.
+     * Storage is queried off the main thread; loaded and cached offline players are
+     * then checked against their in-memory state, which may be newer than what is stored.
+     *
+     * @param callback Receives the matching players on the main thread, or null if the query failed
+     */
+    public void findPlayers(String questId, QuestStatus status, Consumer<Set<UUID>> callback) {
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<UUID> stored;
+            try {
+                stored = storage.findPlayers(questId, status);
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to look up players for quest " + questId, e);
+                plugin.getServer().getScheduler().runTask(plugin, () -> callback.accept(null));
+                return;
+            }
+            
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                Set<UUID> players = new LinkedHashSet<>(stored);
+                Map<UUID, PlayerQuestData> inMemory = new HashMap<>(offlineCache.getEntries());
+                inMemory.putAll(playerData);
+                
+                for (Map.Entry<UUID, PlayerQuestData> entry : inMemory.entrySet()) {
+                    PlayerQuestState state = entry.getValue().getStates().get(questId);
+                    if (state != null && state.getStatus() == status) {
+                        players.add(entry.getKey());
+                    } else {
+                        players.remove(entry.getKey());
+                    }
+                }
+                callback.accept(players);
+            });
+        });
+    }
+    
+    /**
+     * Check whether {@link #findPlayers} sees every player, or whether players stored
+     * in an older format are still being imported
+     */
+    public boolean isFindComplete() {
+        return storage.isFindComplete();
+    }
+    
     /**
      * Unload player data from memory (call on quit)
      */
     public void unloadPlayerData(UUID playerId) {
         savePlayerData(playerId);
         playerData.remove(playerId);
+        stagedData.remove(playerId);
+        
+        if (plugin.getKillTracker() != null) {
+            plugin.getKillTracker().getSubscriptions().removePlayer(playerId);
+        }
+        if (plugin.getVisitTracker() != null) {
+            plugin.getVisitTracker().removePlayer(playerId);
+        }
+    }
+    
+    /**
+     * Get the IDs of all players whose data is currently loaded
+     */
+    public Set<UUID> getLoadedPlayerIds() {
+        return playerData.keySet();
     }
     
     /**
      * Get quest state for a player
      */
     public PlayerQuestState getQuestState(UUID playerId, String questId) {
-        Map<String, PlayerQuestState> states = playerData.get(playerId);
-        if (states == null) {
+        PlayerQuestData data = playerData.get(playerId);
+        if (data == null) {
             return null;
         }
-        return states.get(questId);
+        return data.getStates().get(questId);
+    }
+    
+    /**
+     * Get quest state for a player who may be offline.
+     * Offline players are read through the offline cache. On the main thread they must already
+     * be in memory - wrap the call in {@link #withPlayerData} - or this throws instead of reading the disk.
+     */
+    public PlayerQuestState lookupQuestState(UUID playerId, String questId) {
+        return getOrLoadData(playerId).getStates().get(questId);
     }
     
     /**
-     * Get or create quest state for a player
+     * Get or create quest state for a player.
+     * Offline players are read through the offline cache. On the main thread they must already
+     * be in memory - wrap the call in {@link #withPlayerData} - or this throws instead of reading the disk.
      */
     public PlayerQuestState getOrCreateQuestState(UUID playerId, String questId) {
-        Map<String, PlayerQuestState> states = playerData.computeIfAbsent(playerId, k -> new ConcurrentHashMap<>());
-        return states.computeIfAbsent(questId, k -> new PlayerQuestState(questId));
+        PlayerQuestData data = getOrLoadData(playerId);
+        PlayerQuestState state = data.getStates().get(questId);
+        if (state == null) {
+            state = data.getStates().getOrCreate(questId);
+            data.markDirty();
+        }
+        return state;
     }
     
     /**
-     * Set quest state for a player
+     * Set quest state for a player.
+     * Must also be called after modifying a state in place, so the change gets saved.
+     * For an offline player on the main thread, wrap the call in {@link #withPlayerData}.
      */
     public void setQuestState(UUID playerId, PlayerQuestState state) {
-        Map<String, PlayerQuestState> states = playerData.computeIfAbsent(playerId, k -> new ConcurrentHashMap<>());
-        states.put(state.getQuestId(), state);
+        boolean loaded = playerData.containsKey(playerId);
+        PlayerQuestData data = getOrLoadData(playerId);
+        
+        state = data.getStates().put(state);
+        data.markDirty();
+        
+        // Record the changed fields so they survive a crash before the next save
+        if (journal != null) {
+            journal.append(playerId, state);
+        }
+        
+        // Status or objective may have changed - keep the tracker indexes in sync
+        // (they only index loaded players)
+        if (!loaded) {
+            return;
+        }
+        if (plugin.getKillTracker() != null) {
+            plugin.getKillTracker().getSubscriptions().update(playerId, state);
+        }
+        if (plugin.getVisitTracker() != null) {
+            plugin.getVisitTracker().update(playerId, state);
+        }
+    }
+    
+    /**
+     * Run a task on the main thread once a player's data is in memory.
+     * An offline player's data is read off the main thread into the offline cache first,
+     * so {@link #lookupQuestState} and {@link #setQuestState} inside the task do not touch the disk.
+     */
+    public void withPlayerData(UUID playerId, Runnable task) {
+        if (playerData.containsKey(playerId) || offlineCache.contains(playerId)) {
+            task.run();
+            return;
+        }
+        
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            PlayerQuestData data = readPlayerData(playerId);
+            if (!plugin.isEnabled()) {
+                return;
+            }
+            
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                // Joined while reading - the loaded data wins
+                if (!playerData.containsKey(playerId)) {
+                    offlineCache.putIfAbsent(playerId, data);
+                }
+                task.run();
+            });
+        });
+    }
+    
+    /**
+     * Get a loaded player's data, or an offline player's through the cache.
+     * A cache miss reads from disk, which is refused on the main thread.
+     */
+    private PlayerQuestData getOrLoadData(UUID playerId) {
+        PlayerQuestData data = playerData.get(playerId);
+        if (data == null) {
+            data = offlineCache.peek(playerId);
+        }
+        if (data != null) {
+            return data;
+        }
+        
+        if (plugin.getServer().isPrimaryThread()) {
+            throw new IllegalStateException("Quest data of offline player " + playerId
+                    + " is not in memory; use withPlayerData instead of reading it on the main thread");
+        }
+        return offlineCache.get(playerId);
     }
     
     /**
      * Get all quest states for a player
      */
     public Collection<PlayerQuestState> getPlayerQuestStates(UUID playerId) {
-        Map<String, PlayerQuestState> states = playerData.get(playerId);
-        if (states == null) {
+        PlayerQuestData data = playerData.get(playerId);
+        if (data == null) {
             return Collections.emptyList();
         }
-        return states.values();
+        return data.getStates().values();
     }
     
     /**
-     * Get active quests for a player
+     * Get a loaded player's quest states, e.g. to walk the active quests with
+     * {@link QuestStateTable#nextActive} without building a list (main thread only)
+     *
+     * @return The table, or null if the player is not loaded
+     */
+    public QuestStateTable getQuestStates(UUID playerId) {
+        PlayerQuestData data = playerData.get(playerId);
+        return data != null ? data.getStates() : null;
+    }
+    
+    /**
+     * Get active quests for a player.
+     * Read from the maintained active set - other states are never looked at.
      */
     public List<PlayerQuestState> getActiveQuests(UUID playerId) {
-        List<PlayerQuestState> active = new ArrayList<>();
-        for (PlayerQuestState state : getPlayerQuestStates(playerId)) {
-            if (state.getStatus() == QuestStatus.ACTIVE) {
-                active.add(state);
-            }
+        PlayerQuestData data = playerData.get(playerId);
+        if (data == null) {
+            return Collections.emptyList();
         }
-        return active;
+        return data.getStates().getActive();
     }
     
     /**
      * Get completed quests for a player (turned in)
      */
     public List<PlayerQuestState> getCompletedQuests(UUID playerId) {
-        List<PlayerQuestState> completed = new ArrayList<>();
-        for (PlayerQuestState state : getPlayerQuestStates(playerId)) {
-            if (state.getStatus() == QuestStatus.TURNED_IN) {
-                completed.add(state);
-            }
+        PlayerQuestData data = playerData.get(playerId);
+        if (data == null) {
+            return Collections.emptyList();
         }
-        return completed;
+        return data.getStates().getTurnedIn();
     }
     
     /**
      * Check if player has completed a quest
      */
     public boolean hasCompletedQuest(UUID playerId, String questId) {
-        PlayerQuestState state = getQuestState(playerId, questId);
-        return state != null && state.getStatus() == QuestStatus.TURNED_IN;
+        PlayerQuestData data = playerData.get(playerId);
+        int ordinal = QuestOrdinals.find(questId);
+        return data != null && ordinal >= 0 && data.getStates().isTurnedIn(ordinal);
     }
     
-    private File getPlayerFile(UUID playerId) {
-        return new File(playerDataFolder, playerId.toString() + ".yml");
+    /**
+     * Check if player has completed every quest the requirements ask for
+     */
+    public boolean hasCompletedRequiredQuests(UUID playerId, QuestRequirements requirements) {
+        long[] mask = requirements.requiredQuestsMask();
+        if (mask.length == 0) {
+            return true;
+        }
+        
+        PlayerQuestData data = playerData.get(playerId);
+        return data != null && data.getStates().isTurnedInAll(mask);
     }
 }
@@ -0,0 +1,73 @@
+package com.aethor.aethorquests.manager;
+
+import com.aethor.aethorquests.model.PlayerQuestState;
+import com.aethor.aethorquests.model.QuestStateTable;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cached quest states of one player, plus a change version used to skip
+ * saving players whose data has not changed since their last save
+ */
+public class PlayerQuestData {
+    private final QuestStateTable states;
+    private final AtomicLong version = new AtomicLong();
+    private volatile long savedVersion;
+    
+    public PlayerQuestData() {
+        this(new QuestStateTable());
+    }
+    
+    public PlayerQuestData(QuestStateTable states) {
+        this.states = states;
+    }
+    
+    /**
+     * Build the compact table from states read from storage
+     */
+    public PlayerQuestData(Map<String, PlayerQuestState> states) {
+        this();
+        for (PlayerQuestState state : states.values()) {
+            this.states.put(state);
+        }
+    }
+    
+    /**
+     * Get the player's quest states. Modify them on the main thread only.
+     */
+    public QuestStateTable getStates() {
+        return states;
+    }
+    
+    /**
+     * Record that the player's data changed
+     */
+    public void markDirty() {
+        version.incrementAndGet();
+    }
+    
+    /**
+     * Check if the data changed since it was last saved
+     */
+    public boolean isDirty() {
+        return version.get() != savedVersion;
+    }
+    
+    /**
+     * Get the current change version; pass it to {@link #markSaved} once that version is on disk
+     */
+    public long getVersion() {
+        return version.get();
+    }
+    
+    /**
+     * Record that the given version has been saved.
+     * Changes made after that version was read keep the data dirty.
+     */
+    public synchronized void markSaved(long savedVersion) {
+        if (savedVersion > this.savedVersion) {
+            this.savedVersion = savedVersion;
+        }
+    }
+}
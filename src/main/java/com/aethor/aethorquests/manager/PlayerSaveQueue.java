@@ -0,0 +1,360 @@
+package com.aethor.aethorquests.manager;
+
+import com.aethor.aethorquests.AethorQuestsPlugin;
+import com.aethor.aethorquests.model.PlayerQuestState;
+import com.aethor.aethorquests.storage.PlayerStorage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Writes player snapshots on a dedicated thread.
+ * Repeated saves of the same player are coalesced into the newest snapshot,
+ * and everything queued within the group commit window is written as one batch.
+ * Large batches (autosave, shutdown) are split across a bounded pool of write threads.
+ */
+public class PlayerSaveQueue implements Runnable {
+    
+    // Smallest chunk worth handing to another write thread
+    private static final int MIN_CHUNK_SIZE = 32;
+    
+    private final AethorQuestsPlugin plugin;
+    private final PlayerStorage storage;
+    private final long groupCommitMillis;
+    private final int writeThreads;
+    private final ExecutorService writers;
+    
+    private final Object lock = new Object();
+    
+    // Newest snapshot per player that has not been picked up by the writer yet
+    private final Map<UUID, PlayerSnapshot> pending = new LinkedHashMap<>();
+    
+    // Snapshots the writer is currently writing
+    private final Map<UUID, PlayerSnapshot> inFlight = new HashMap<>();
+    
+    // Run before the next batch is written, whether or not the writes succeed
+    private final List<Runnable> beforeWrite = new ArrayList<>();
+    
+    // Run after everything queued before them has been written successfully
+    private final List<Runnable> checkpoints = new ArrayList<>();
+    
+    // Players whose last write failed, writer thread only. Until a later write of theirs
+    // succeeds, their progress may exist only in memory and the journal, so checkpoints are skipped.
+    private final Set<UUID> failedPlayers = new HashSet<>();
+    
+    // Handed over by shutdown when the writer does not finish in time
+    private Runnable afterStop;
+    private boolean stopped;
+    
+    private Thread thread;
+    private volatile boolean running;
+    
+    public PlayerSaveQueue(AethorQuestsPlugin plugin, PlayerStorage storage, long groupCommitMillis, int writeThreads) {
+        this.plugin = plugin;
+        this.storage = storage;
+        this.groupCommitMillis = groupCommitMillis;
+        // A backend that serializes writes anyway would only split the group commit into several commits
+        this.writeThreads = storage.supportsParallelWrites() ? Math.max(1, writeThreads) : 1;
+        
+        if (this.writeThreads > 1) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.writers = Executors.newFixedThreadPool(this.writeThreads,
+                    r -> new Thread(r, "AethorQuests-Saver-" + threadCount.incrementAndGet()));
+        } else {
+            this.writers = null;
+        }
+    }
+    
+    /**
+     * Start the writer thread
+     */
+    public void start() {
+        running = true;
+        thread = new Thread(this, "AethorQuests-Saver");
+        thread.start();
+    }
+    
+    /**
+     * Queue a snapshot for writing. Never blocks on disk.
+     */
+    public void enqueue(PlayerSnapshot snapshot) {
+        synchronized (lock) {
+            pending.put(snapshot.getPlayerId(), snapshot);
+            lock.notifyAll();
+        }
+    }
+    
+    /**
+     * Queue I/O the main thread must not wait for, to run on the writer thread
+     * before any snapshot queued after this call is written
+     */
+    public void enqueueBeforeWrite(Runnable action) {
+        synchronized (lock) {
+            beforeWrite.add(action);
+            lock.notifyAll();
+        }
+    }
+    
+    /**
+     * Queue an action to run once every snapshot queued so far has been written.
+     * The action is dropped if any of those writes fail, or if any earlier failed
+     * write has not been redone successfully since.
+     */
+    public void enqueueCheckpoint(Runnable checkpoint) {
+        synchronized (lock) {
+            checkpoints.add(checkpoint);
+            lock.notifyAll();
+        }
+    }
+    
+    /**
+     * Get the newest snapshot of a player that is queued or being written.
+     * Loads must prefer it over the file on disk, which may not be written yet.
+     *
+     * @return The snapshot, or null if nothing is waiting to be written for the player
+     */
+    public PlayerSnapshot getUnwritten(UUID playerId) {
+        synchronized (lock) {
+            PlayerSnapshot snapshot = pending.get(playerId);
+            return snapshot != null ? snapshot : inFlight.get(playerId);
+        }
+    }
+    
+    /**
+     * Write everything still queued and stop the writer thread
+     *
+     * @param timeoutMillis How long to wait for the remaining writes
+     * @param afterStop Run once nothing writes to storage anymore. This is the calling thread if
+     *                  the writer finished in time, otherwise the writer thread once it has drained.
+     * @return True if everything was written within the timeout
+     */
+    public boolean shutdown(long timeoutMillis, Runnable afterStop) {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        
+        if (thread != null) {
+            try {
+                thread.join(timeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            
+            synchronized (lock) {
+                if (!stopped) {
+                    this.afterStop = afterStop;
+                    plugin.getLogger().warning("Player data writer did not finish within " + timeoutMillis + "ms, it will keep writing in the background");
+                    return false;
+                }
+            }
+        }
+        
+        afterStop.run();
+        return true;
+    }
+    
+    @Override
+    public void run() {
+        while (true) {
+            Map<UUID, PlayerSnapshot> batch;
+            List<Runnable> batchBeforeWrite;
+            List<Runnable> batchCheckpoints;
+            
+            synchronized (lock) {
+                while (pending.isEmpty() && checkpoints.isEmpty() && beforeWrite.isEmpty() && running) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+                
+                if (pending.isEmpty() && checkpoints.isEmpty() && beforeWrite.isEmpty()) {
+                    // Stopped and drained
+                    break;
+                }
+            }
+            
+            // Let saves that arrive shortly after join this batch
+            if (running && groupCommitMillis > 0) {
+                try {
+                    Thread.sleep(groupCommitMillis);
+                } catch (InterruptedException e) {
+                    running = false;
+                }
+            }
+            
+            synchronized (lock) {
+                batch = new LinkedHashMap<>(pending);
+                pending.clear();
+                inFlight.putAll(batch);
+                
+                batchBeforeWrite = new ArrayList<>(beforeWrite);
+                beforeWrite.clear();
+                batchCheckpoints = new ArrayList<>(checkpoints);
+                checkpoints.clear();
+            }
+            
+            for (Runnable action : batchBeforeWrite) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    plugin.getLogger().log(Level.SEVERE, "Error running queued save action", e);
+                }
+            }
+            
+            Set<UUID> failed = ConcurrentHashMap.newKeySet();
+            if (!batch.isEmpty()) {
+                write(batch, failed);
+            }
+            failedPlayers.removeAll(batch.keySet());
+            failedPlayers.addAll(failed);
+            
+            if (!failedPlayers.isEmpty() && !batchCheckpoints.isEmpty()) {
+                plugin.getLogger().warning("Skipping save checkpoint, data of " + failedPlayers.size() + " player(s) is not saved yet");
+            } else {
+                for (Runnable checkpoint : batchCheckpoints) {
+                    try {
+                        checkpoint.run();
+                    } catch (RuntimeException e) {
+                        plugin.getLogger().log(Level.SEVERE, "Error running save checkpoint", e);
+                    }
+                }
+            }
+            
+            synchronized (lock) {
+                for (Map.Entry<UUID, PlayerSnapshot> entry : batch.entrySet()) {
+                    inFlight.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        
+        if (writers != null) {
+            writers.shutdown();
+            try {
+                // Chunks abandoned after an interrupt may still be writing
+                writers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                plugin.getLogger().warning("Interrupted while waiting for player data writers, leaving storage open");
+                return;
+            }
+        }
+        
+        Runnable handedOver;
+        synchronized (lock) {
+            stopped = true;
+            handedOver = afterStop;
+        }
+        if (handedOver != null) {
+            try {
+                handedOver.run();
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Error finishing player data writer shutdown", e);
+            }
+        }
+    }
+    
+    /**
+     * Write a batch, split into chunks written in parallel if it is large enough
+     *
+     * @param failed Collects the players whose snapshot could not be written
+     */
+    private void write(Map<UUID, PlayerSnapshot> batch, Set<UUID> failed) {
+        int chunkCount = Math.min(writeThreads, batch.size() / MIN_CHUNK_SIZE);
+        if (writers == null || chunkCount < 2) {
+            writeChunk(batch, failed);
+            return;
+        }
+        
+        long start = System.nanoTime();
+        
+        List<Map<UUID, PlayerSnapshot>> chunks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            chunks.add(new LinkedHashMap<>());
+        }
+        int index = 0;
+        for (Map.Entry<UUID, PlayerSnapshot> entry : batch.entrySet()) {
+            chunks.get(index++ % chunkCount).put(entry.getKey(), entry.getValue());
+        }
+        
+        List<Future<?>> results = new ArrayList<>(chunkCount);
+        for (Map<UUID, PlayerSnapshot> chunk : chunks) {
+            results.add(writers.submit(() -> writeChunk(chunk, failed)));
+        }
+        
+        for (int i = 0; i < results.size(); i++) {
+            try {
+                results.get(i).get();
+            } catch (ExecutionException e) {
+                plugin.getLogger().log(Level.SEVERE, "Error writing player data", e.getCause());
+                failed.addAll(chunks.get(i).keySet());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Not known whether the rest was written
+                for (int j = i; j < chunks.size(); j++) {
+                    failed.addAll(chunks.get(j).keySet());
+                }
+                break;
+            }
+        }
+        
+        if (plugin.isDebug()) {
+            plugin.getLogger().info("Wrote " + batch.size() + " player(s) on " + chunkCount + " threads in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+        }
+    }
+    
+    /**
+     * Write a batch, falling back to one player at a time if the batch fails
+     *
+     * @param failed Collects the players whose snapshot could not be written
+     */
+    private void writeChunk(Map<UUID, PlayerSnapshot> batch, Set<UUID> failed) {
+        Map<UUID, Collection<PlayerQuestState>> states = new LinkedHashMap<>();
+        for (PlayerSnapshot snapshot : batch.values()) {
+            states.put(snapshot.getPlayerId(), snapshot.getStates());
+        }
+        
+        try {
+            storage.saveBatch(states);
+            for (PlayerSnapshot snapshot : batch.values()) {
+                snapshot.getSource().markSaved(snapshot.getVersion());
+            }
+            
+            if (plugin.isDebug()) {
+                plugin.getLogger().info("Saved data for " + batch.size() + " player(s)");
+            }
+            return;
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().log(Level.WARNING, "Batch save of " + batch.size() + " player(s) failed, retrying individually", e);
+        }
+        
+        for (PlayerSnapshot snapshot : batch.values()) {
+            try {
+                storage.save(snapshot.getPlayerId(), snapshot.getStates());
+                snapshot.getSource().markSaved(snapshot.getVersion());
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to save player data for " + snapshot.getPlayerId(), e);
+                failed.add(snapshot.getPlayerId());
+            }
+        }
+    }
+}
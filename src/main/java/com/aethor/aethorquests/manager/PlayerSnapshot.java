@@ -0,0 +1,49 @@
+package com.aethor.aethorquests.manager;
+
+import com.aethor.aethorquests.model.PlayerQuestState;
+import com.aethor.aethorquests.model.QuestStateTable;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Point-in-time copy of a player's quest states.
+ * Captured on the main thread so it can be written from any thread without
+ * seeing changes the trackers make in the meantime.
+ */
+public class PlayerSnapshot {
+    private final UUID playerId;
+    private final PlayerQuestData source;
+    private final long version;
+    private final QuestStateTable states;
+    
+    PlayerSnapshot(UUID playerId, PlayerQuestData source, long version, QuestStateTable states) {
+        this.playerId = playerId;
+        this.source = source;
+        this.version = version;
+        this.states = states;
+    }
+    
+    public UUID getPlayerId() {
+        return playerId;
+    }
+    
+    public long getVersion() {
+        return version;
+    }
+    
+    public List<PlayerQuestState> getStates() {
+        return states.values();
+    }
+    
+    /**
+     * Copy the captured states into a table that can be modified
+     */
+    QuestStateTable copyStates() {
+        return states.copy();
+    }
+    
+    PlayerQuestData getSource() {
+        return source;
+    }
+}
@@ -0,0 +1,335 @@
+package com.aethor.aethorquests.manager;
+
+import com.aethor.aethorquests.AethorQuestsPlugin;
+import com.aethor.aethorquests.model.Dialogue;
+import com.aethor.aethorquests.model.Objective;
+import com.aethor.aethorquests.model.ObjectiveType;
+import com.aethor.aethorquests.model.QuestDefinition;
+import com.aethor.aethorquests.model.QuestRequirements;
+import com.aethor.aethorquests.model.Reward;
+import com.aethor.aethorquests.storage.VarInt;
+import org.bukkit.Material;
+import org.bukkit.entity.EntityType;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled quest catalog cache, quests.cache in the plugin folder.
+ *
+ * Holds every quest definition already resolved (enums looked up, objectives typed),
+ * plus each quest's source file and content hash. It is keyed by a SHA-256 of all
+ * quest files and the settings that end up in the definitions, so it is used only
+ * while the quest source is unchanged. Startup reads it into memory in one go and
+ * decodes it directly instead of parsing YAML.
+ */
+class QuestCatalogCache {
+    
+    // "AQQC"
+    private static final int MAGIC = 0x41515143;
+    private static final int VERSION = 1;
+    
+    private final AethorQuestsPlugin plugin;
+    private final File cacheFile;
+    
+    QuestCatalogCache(AethorQuestsPlugin plugin, File cacheFile) {
+        this.plugin = plugin;
+        this.cacheFile = cacheFile;
+    }
+    
+    /**
+     * Compute the cache key for the given quest files
+     */
+    byte[] computeKey(List<File> files) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+        
+        // Inputs besides the files that change the compiled definitions
+        update(digest, "v" + VERSION);
+        update(digest, plugin.getServer().getBukkitVersion());
+        update(digest, String.valueOf(plugin.getConfig().getDouble("visitCheck.radiusDefault", 5.0)));
+        
+        byte[] buffer = new byte[8192];
+        for (File file : files) {
+            update(digest, getRelativePath(file));
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            // Separates one file's bytes from the next file's name
+            update(digest, "\0");
+        }
+        return digest.digest();
+    }
+    
+    /**
+     * Read the cached catalog into the given maps
+     *
+     * @return True if the cache matched the key and was read, false if it is missing, stale or unreadable
+     */
+    boolean read(byte[] key, Map<String, QuestDefinition> quests, Map<String, Long> hashes, Map<String, File> sourceFiles) {
+        if (!cacheFile.exists()) {
+            return false;
+        }
+        
+        // Not memory-mapped: a live mapping would keep the file from being replaced on Windows
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(cacheFile.toPath())))) {
+            
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                return false;
+            }
+            
+            byte[] cachedKey = new byte[VarInt.readVarInt(in)];
+            in.readFully(cachedKey);
+            if (!Arrays.equals(key, cachedKey)) {
+                return false;
+            }
+            
+            int fileCount = VarInt.readVarInt(in);
+            List<File> files = new ArrayList<>(fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                files.add(new File(plugin.getDataFolder(), VarInt.readString(in)));
+            }
+            
+            int count = VarInt.readVarInt(in);
+            for (int i = 0; i < count; i++) {
+                File sourceFile = files.get(VarInt.readVarInt(in));
+                long hash = in.readLong();
+                QuestDefinition quest = readQuest(in);
+                
+                quests.put(quest.getId(), quest);
+                hashes.put(quest.getId(), hash);
+                sourceFiles.put(quest.getId(), sourceFile);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Ignoring unreadable quest cache: " + e.getMessage());
+            quests.clear();
+            hashes.clear();
+            sourceFiles.clear();
+            return false;
+        }
+    }
+    
+    /**
+     * Write the catalog to the cache. Failures are logged and leave the previous cache in place.
+     */
+    void write(byte[] key, Map<String, QuestDefinition> quests, Map<String, Long> hashes, Map<String, File> sourceFiles) {
+        File tempFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                VarInt.writeVarInt(out, key.length);
+                out.write(key);
+                
+                // File table - quests refer to their source file by index
+                Map<File, Integer> fileIndexes = new LinkedHashMap<>();
+                for (File file : sourceFiles.values()) {
+                    fileIndexes.putIfAbsent(file, fileIndexes.size());
+                }
+                VarInt.writeVarInt(out, fileIndexes.size());
+                for (File file : fileIndexes.keySet()) {
+                    VarInt.writeString(out, getRelativePath(file));
+                }
+                
+                VarInt.writeVarInt(out, quests.size());
+                for (QuestDefinition quest : quests.values()) {
+                    VarInt.writeVarInt(out, fileIndexes.get(sourceFiles.get(quest.getId())));
+                    out.writeLong(hashes.get(quest.getId()));
+                    writeQuest(out, quest);
+                }
+            }
+            
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Failed to write the quest cache: " + e.getMessage());
+            tempFile.delete();
+        }
+    }
+    
+    private String getRelativePath(File file) {
+        return plugin.getDataFolder().toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+    }
+    
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+    
+    private static void writeQuest(DataOutput out, QuestDefinition quest) throws IOException {
+        VarInt.writeString(out, quest.getId());
+        writeNullableString(out, quest.getTitle());
+        writeStringList(out, quest.getDescription());
+        writeNullableString(out, quest.getGiverNpcId());
+        
+        QuestRequirements requirements = quest.getRequirements();
+        VarInt.writeVarInt(out, requirements.getMinLevel());
+        writeStringList(out, requirements.getRequiredQuestsCompleted());
+        
+        VarInt.writeVarInt(out, quest.getObjectives().size());
+        for (Objective objective : quest.getObjectives()) {
+            writeObjective(out, objective);
+        }
+        
+        Reward rewards = quest.getRewards();
+        VarInt.writeVarInt(out, rewards.getXp());
+        out.writeDouble(rewards.getMoney());
+        writeStringList(out, rewards.getCommands());
+        
+        Dialogue dialogue = quest.getDialogue();
+        out.writeBoolean(dialogue != null);
+        if (dialogue != null) {
+            writeStringList(out, dialogue.getAcceptDialogue());
+            writeStringList(out, dialogue.getProgressDialogue());
+            writeStringList(out, dialogue.getCompletionDialogue());
+        }
+    }
+    
+    private static QuestDefinition readQuest(DataInput in) throws IOException {
+        QuestDefinition quest = new QuestDefinition(VarInt.readString(in));
+        quest.setTitle(readNullableString(in));
+        quest.setDescription(readStringList(in));
+        quest.setGiverNpcId(readNullableString(in));
+        
+        QuestRequirements requirements = new QuestRequirements();
+        requirements.setMinLevel(VarInt.readVarInt(in));
+        requirements.setRequiredQuestsCompleted(readStringList(in));
+        quest.setRequirements(requirements);
+        
+        int objectiveCount = VarInt.readVarInt(in);
+        for (int i = 0; i < objectiveCount; i++) {
+            quest.addObjective(readObjective(in));
+        }
+        
+        Reward reward = new Reward();
+        reward.setXp(VarInt.readVarInt(in));
+        reward.setMoney(in.readDouble());
+        reward.setCommands(readStringList(in));
+        quest.setRewards(reward);
+        
+        if (in.readBoolean()) {
+            Dialogue dialogue = new Dialogue();
+            dialogue.setAcceptDialogue(readStringList(in));
+            dialogue.setProgressDialogue(readStringList(in));
+            dialogue.setCompletionDialogue(readStringList(in));
+            quest.setDialogue(dialogue);
+        } else {
+            quest.setDialogue(null);
+        }
+        
+        return quest;
+    }
+    
+    private static void writeObjective(DataOutput out, Objective objective) throws IOException {
+        VarInt.writeString(out, objective.getType().name());
+        writeNullableString(out, objective.getDescription());
+        
+        switch (objective.getType()) {
+            case KILL -> {
+                writeNullableString(out, objective.getEntityType() != null ? objective.getEntityType().name() : null);
+                writeNullableString(out, objective.getMythicMobName());
+                VarInt.writeVarInt(out, objective.getKillAmount());
+            }
+            case TALK -> writeNullableString(out, objective.getTalkNpcId());
+            case COLLECT -> {
+                writeNullableString(out, objective.getCollectMaterial() != null ? objective.getCollectMaterial().name() : null);
+                VarInt.writeVarInt(out, objective.getCollectAmount());
+            }
+            case VISIT -> {
+                writeNullableString(out, objective.getVisitWorld());
+                out.writeDouble(objective.getVisitX());
+                out.writeDouble(objective.getVisitY());
+                out.writeDouble(objective.getVisitZ());
+                out.writeDouble(objective.getVisitRadius());
+            }
+        }
+    }
+    
+    private static Objective readObjective(DataInput in) throws IOException {
+        ObjectiveType type = ObjectiveType.valueOf(VarInt.readString(in));
+        Objective objective = new Objective(type, readNullableString(in));
+        
+        switch (type) {
+            case KILL -> {
+                String entityType = readNullableString(in);
+                if (entityType != null) {
+                    objective.setEntityType(EntityType.valueOf(entityType));
+                }
+                objective.setMythicMobName(readNullableString(in));
+                objective.setKillAmount(VarInt.readVarInt(in));
+            }
+            case TALK -> objective.setTalkNpcId(readNullableString(in));
+            case COLLECT -> {
+                String material = readNullableString(in);
+                if (material != null) {
+                    objective.setCollectMaterial(Material.valueOf(material));
+                }
+                objective.setCollectAmount(VarInt.readVarInt(in));
+            }
+            case VISIT -> {
+                objective.setVisitWorld(readNullableString(in));
+                objective.setVisitX(in.readDouble());
+                objective.setVisitY(in.readDouble());
+                objective.setVisitZ(in.readDouble());
+                objective.setVisitRadius(in.readDouble());
+            }
+        }
+        
+        return objective;
+    }
+    
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            VarInt.writeString(out, value);
+        }
+    }
+    
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? VarInt.readString(in) : null;
+    }
+    
+    private static void writeStringList(DataOutput out, List<String> values) throws IOException {
+        List<String> list = values != null ? values : List.of();
+        VarInt.writeVarInt(out, list.size());
+        for (String value : list) {
+            VarInt.writeString(out, value);
+        }
+    }
+    
+    private static List<String> readStringList(DataInput in) throws IOException {
+        int count = VarInt.readVarInt(in);
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(VarInt.readString(in));
+        }
+        return values;
+    }
+}
@@ -12,77 +12,36 @@ import java.util.*;
 import java.util.logging.Level;
 
 /**
- * Manages reading and writing quests to quests.yml
+ * Manages reading and writing quests to quests.yml and the quests/ directory.
+ * Each quest is written back to the file it was loaded from; edits of one quest
+ * only rewrite that quest's file.
  */
 public class QuestFileManager {
     private final AethorQuestsPlugin plugin;
     private final File questsFile;
+    private final File questsDirectory;
     
     public QuestFileManager(AethorQuestsPlugin plugin) {
         this.plugin = plugin;
         this.questsFile = new File(plugin.getDataFolder(), "quests.yml");
+        this.questsDirectory = new File(plugin.getDataFolder(), "quests");
     }
     
     /**
-     * Add a new quest to the quests.yml file
+     * Add a new quest, or replace it in the file it is stored in
      */
     public void addQuest(QuestDefinition quest) {
-        FileConfiguration config = YamlConfiguration.loadConfiguration(questsFile);
+        File file = getQuestFile(quest.getId());
+        FileConfiguration config = YamlConfiguration.loadConfiguration(file);
         
         String path = "quests." + quest.getId();
-        
-        config.set(path + ".id", quest.getId());
-        config.set(path + ".title", quest.getTitle());
-        config.set(path + ".description", quest.getDescription());
-        config.set(path + ".giverNpcId", quest.getGiverNpcId());
-        
-        // Requirements
-        config.set(path + ".requirements.minLevel", quest.getRequirements().getMinLevel());
-        config.set(path + ".requirements.requiredQuestsCompleted", quest.getRequirements().getRequiredQuestsCompleted());
-        
-        // Objectives
-        List<Map<String, Object>> objectivesList = new ArrayList<>();
-        for (Objective obj : quest.getObjectives()) {
-            Map<String, Object> objMap = new HashMap<>();
-            objMap.put("type", obj.getType().name());
-            objMap.put("description", obj.getDescription());
-            
-            switch (obj.getType()) {
-                case KILL -> {
-                    if (obj.isMythicMob()) {
-                        objMap.put("target", obj.getMythicMobName());
-                    } else {
-                        objMap.put("target", obj.getEntityType().name());
-                    }
-                    objMap.put("amount", obj.getKillAmount());
-                }
-                case TALK -> objMap.put("target", obj.getTalkNpcId());
-                case COLLECT -> {
-                    objMap.put("target", obj.getCollectMaterial().name());
-                    objMap.put("amount", obj.getCollectAmount());
-                }
-                case VISIT -> {
-                    objMap.put("world", obj.getVisitWorld());
-                    objMap.put("x", obj.getVisitX());
-                    objMap.put("y", obj.getVisitY());
-                    objMap.put("z", obj.getVisitZ());
-                    objMap.put("radius", obj.getVisitRadius());
-                }
-            }
-            
-            objectivesList.add(objMap);
-        }
-        config.set(path + ".objectives", objectivesList);
-        
-        // Rewards
-        Reward rewards = quest.getRewards();
-        config.set(path + ".rewards.xp", rewards.getXp());
-        config.set(path + ".rewards.money", rewards.getMoney());
-        config.set(path + ".rewards.commands", rewards.getCommands());
-        config.set(path + ".rewards.items", new ArrayList<>()); // Items handled separately
+        // Drop whatever was there, so removed fields do not linger
+        config.set(path, null);
+        writeQuest(config, path, quest);
         
         try {
-            config.save(questsFile);
+            config.save(file);
+            recordOwnWrite(file);
             plugin.getLogger().info("Saved quest: " + quest.getId());
         } catch (IOException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to save quest: " + quest.getId(), e);
@@ -90,28 +49,38 @@ public class QuestFileManager {
     }
     
     /**
-     * Update an existing quest in the quests.yml file
+     * Update an existing quest in the file it is stored in
      */
     public void updateQuest(QuestDefinition quest) {
-        // Remove old quest
-        removeQuest(quest.getId());
-        // Add updated quest
         addQuest(quest);
     }
     
     /**
-     * Remove a quest from the quests.yml file
+     * Remove a quest from the file it is stored in.
+     * A file under quests/ that no longer holds any quest is deleted.
      */
     public void removeQuest(String questId) {
-        FileConfiguration config = YamlConfiguration.loadConfiguration(questsFile);
+        File file = getQuestFile(questId);
+        FileConfiguration config = YamlConfiguration.loadConfiguration(file);
         
         ConfigurationSection questsSection = config.getConfigurationSection("quests");
         if (questsSection != null) {
             questsSection.set(questId, null);
         }
         
+        if (!file.equals(questsFile) && (questsSection == null || questsSection.getKeys(false).isEmpty())) {
+            if (file.delete() || !file.exists()) {
+                recordOwnWrite(file);
+                plugin.getLogger().info("Removed quest: " + questId);
+            } else {
+                plugin.getLogger().severe("Failed to remove quest: " + questId + ", could not delete " + file.getName());
+            }
+            return;
+        }
+        
         try {
-            config.save(questsFile);
+            config.save(file);
+            recordOwnWrite(file);
             plugin.getLogger().info("Removed quest: " + questId);
         } catch (IOException e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to remove quest: " + questId, e);
@@ -119,88 +88,136 @@ public class QuestFileManager {
     }
     
     /**
-     * Save a single quest to the file
-     * Note: This is a placeholder - proper serialization should be implemented
+     * Save a single quest, in memory and to its file
      */
     public void saveQuest(QuestDefinition quest) {
         // Update the quest in the manager's memory first
         plugin.getQuestManager().updateQuest(quest);
-        // Then save all quests to file
-        saveAllQuests();
+        // Then write only the file the quest lives in
+        addQuest(quest);
     }
     
     /**
-     * Save all currently loaded quests back to the file
+     * Save all currently loaded quests back to their files.
+     * Each file is loaded first and only the sections of loaded quests are replaced,
+     * so quests that failed to load stay in the file untouched.
      */
     public void saveAllQuests() {
-        FileConfiguration config = new YamlConfiguration();
+        Map<File, FileConfiguration> configs = new LinkedHashMap<>();
         
         for (QuestDefinition quest : plugin.getQuestManager().getAllQuests()) {
+            FileConfiguration config = configs.computeIfAbsent(getQuestFile(quest.getId()), YamlConfiguration::loadConfiguration);
             String path = "quests." + quest.getId();
+            // Drop whatever was there, so removed fields do not linger
+            config.set(path, null);
+            writeQuest(config, path, quest);
+        }
+        
+        boolean saved = true;
+        for (Map.Entry<File, FileConfiguration> entry : configs.entrySet()) {
+            try {
+                entry.getValue().save(entry.getKey());
+                recordOwnWrite(entry.getKey());
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to save quests to " + entry.getKey().getName(), e);
+                saved = false;
+            }
+        }
+        
+        if (saved) {
+            plugin.getLogger().info("Saved all quests to file");
+        }
+    }
+    
+    /**
+     * Tell the file watcher about a write of ours, so it does not reload the quests for it
+     */
+    private void recordOwnWrite(File file) {
+        QuestFileWatcher watcher = plugin.getQuestFileWatcher();
+        if (watcher != null) {
+            watcher.recordOwnWrite(file.toPath());
+        }
+    }
+    
+    /**
+     * Get the file a quest is stored in. Quests that were not loaded from a file go to
+     * quests/{id}.yml with the DIRECTORY layout and to quests.yml otherwise.
+     */
+    private File getQuestFile(String questId) {
+        File sourceFile = plugin.getQuestManager().getSourceFile(questId);
+        if (sourceFile != null) {
+            return sourceFile;
+        }
+        
+        if (!plugin.getQuestManager().isDirectoryLayout()) {
+            return questsFile;
+        }
+        
+        if (!questsDirectory.exists()) {
+            questsDirectory.mkdirs();
+        }
+        return new File(questsDirectory, questId.replaceAll("[^A-Za-z0-9_.-]", "_") + ".yml");
+    }
+    
+    /**
+     * Write a quest's fields under the given path
+     */
+    private void writeQuest(ConfigurationSection config, String path, QuestDefinition quest) {
+        config.set(path + ".id", quest.getId());
+        config.set(path + ".title", quest.getTitle());
+        config.set(path + ".description", quest.getDescription());
+        config.set(path + ".giverNpcId", quest.getGiverNpcId());
+        
+        // Requirements
+        config.set(path + ".requirements.minLevel", quest.getRequirements().getMinLevel());
+        config.set(path + ".requirements.requiredQuestsCompleted", quest.getRequirements().getRequiredQuestsCompleted());
+        
+        // Objectives
+        List<Map<String, Object>> objectivesList = new ArrayList<>();
+        for (Objective obj : quest.getObjectives()) {
+            Map<String, Object> objMap = new HashMap<>();
+            objMap.put("type", obj.getType().name());
+            objMap.put("description", obj.getDescription());
             
-            config.set(path + ".id", quest.getId());
-            config.set(path + ".title", quest.getTitle());
-            config.set(path + ".description", quest.getDescription());
-            config.set(path + ".giverNpcId", quest.getGiverNpcId());
-            
-            // Requirements
-            config.set(path + ".requirements.minLevel", quest.getRequirements().getMinLevel());
-            config.set(path + ".requirements.requiredQuestsCompleted", quest.getRequirements().getRequiredQuestsCompleted());
-            
-            // Objectives
-            List<Map<String, Object>> objectivesList = new ArrayList<>();
-            for (Objective obj : quest.getObjectives()) {
-                Map<String, Object> objMap = new HashMap<>();
-                objMap.put("type", obj.getType().name());
-                objMap.put("description", obj.getDescription());
-                
-                switch (obj.getType()) {
-                    case KILL -> {
-                        if (obj.isMythicMob()) {
-                            objMap.put("target", obj.getMythicMobName());
-                        } else {
-                            objMap.put("target", obj.getEntityType().name());
-                        }
-                        objMap.put("amount", obj.getKillAmount());
-                    }
-                    case TALK -> objMap.put("target", obj.getTalkNpcId());
-                    case COLLECT -> {
-                        objMap.put("target", obj.getCollectMaterial().name());
-                        objMap.put("amount", obj.getCollectAmount());
-                    }
-                    case VISIT -> {
-                        objMap.put("world", obj.getVisitWorld());
-                        objMap.put("x", obj.getVisitX());
-                        objMap.put("y", obj.getVisitY());
-                        objMap.put("z", obj.getVisitZ());
-                        objMap.put("radius", obj.getVisitRadius());
+            switch (obj.getType()) {
+                case KILL -> {
+                    if (obj.isMythicMob()) {
+                        objMap.put("target", obj.getMythicMobName());
+                    } else {
+                        objMap.put("target", obj.getEntityType().name());
                     }
+                    objMap.put("amount", obj.getKillAmount());
+                }
+                case TALK -> objMap.put("target", obj.getTalkNpcId());
+                case COLLECT -> {
+                    objMap.put("target", obj.getCollectMaterial().name());
+                    objMap.put("amount", obj.getCollectAmount());
+                }
+                case VISIT -> {
+                    objMap.put("world", obj.getVisitWorld());
+                    objMap.put("x", obj.getVisitX());
+                    objMap.put("y", obj.getVisitY());
+                    objMap.put("z", obj.getVisitZ());
+                    objMap.put("radius", obj.getVisitRadius());
                 }
-                
-                objectivesList.add(objMap);
             }
-            config.set(path + ".objectives", objectivesList);
-            
-            // Rewards
-            Reward rewards = quest.getRewards();
-            config.set(path + ".rewards.xp", rewards.getXp());
-            config.set(path + ".rewards.money", rewards.getMoney());
-            config.set(path + ".rewards.commands", rewards.getCommands());
-            config.set(path + ".rewards.items", new ArrayList<>());
             
-            // Dialogue
-            if (quest.getDialogue() != null) {
-                config.set(path + ".dialogue.acceptDialogue", quest.getDialogue().getAcceptDialogue());
-                config.set(path + ".dialogue.progressDialogue", quest.getDialogue().getProgressDialogue());
-                config.set(path + ".dialogue.completionDialogue", quest.getDialogue().getCompletionDialogue());
-            }
+            objectivesList.add(objMap);
         }
+        config.set(path + ".objectives", objectivesList);
         
-        try {
-            config.save(questsFile);
-            plugin.getLogger().info("Saved all quests to file");
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, "Failed to save quests", e);
+        // Rewards
+        Reward rewards = quest.getRewards();
+        config.set(path + ".rewards.xp", rewards.getXp());
+        config.set(path + ".rewards.money", rewards.getMoney());
+        config.set(path + ".rewards.commands", rewards.getCommands());
+        config.set(path + ".rewards.items", new ArrayList<>());
+        
+        // Dialogue
+        if (quest.getDialogue() != null) {
+            config.set(path + ".dialogue.acceptDialogue", quest.getDialogue().getAcceptDialogue());
+            config.set(path + ".dialogue.progressDialogue", quest.getDialogue().getProgressDialogue());
+            config.set(path + ".dialogue.completionDialogue", quest.getDialogue().getCompletionDialogue());
         }
     }
 }
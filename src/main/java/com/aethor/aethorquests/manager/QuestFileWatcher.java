@@ -0,0 +1,215 @@
+package com.aethor.aethorquests.manager;
+
+import com.aethor.aethorquests.AethorQuestsPlugin;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Watches quests.yml and the quests/ directory and reloads the quests when they change on disk.
+ * Editors often write a file in several steps, so the watcher waits until
+ * the file has been quiet for a short delay before reloading. The reload only
+ * rebuilds quests whose content changed.
+ * Files the plugin wrote itself (see {@link #recordOwnWrite}) do not trigger a reload
+ * as long as their content is still what the plugin wrote.
+ */
+public class QuestFileWatcher implements Runnable {
+    private static final long DELETED = 0L;
+    
+    private final AethorQuestsPlugin plugin;
+    private final Path questsFile;
+    private final Path questsDirectory;
+    private final long quietMillis;
+    
+    // Content hash of each file as the plugin last wrote it, DELETED if the plugin deleted it
+    private final Map<Path, Long> ownWrites = new ConcurrentHashMap<>();
+    
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean running;
+    
+    public QuestFileWatcher(AethorQuestsPlugin plugin, Path questsFile, Path questsDirectory, long quietMillis) {
+        this.plugin = plugin;
+        this.questsFile = questsFile;
+        this.questsDirectory = questsDirectory;
+        this.quietMillis = quietMillis;
+    }
+    
+    /**
+     * Start watching on a background thread
+     */
+    public void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        questsFile.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        if (Files.isDirectory(questsDirectory)) {
+            registerQuestsDirectory();
+        }
+        
+        running = true;
+        thread = new Thread(this, "AethorQuests-QuestWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Stop watching. Reloads already handed to the main thread still run.
+     */
+    public void stop() {
+        running = false;
+        if (watchService == null) {
+            return;
+        }
+        
+        try {
+            // Wakes the watcher thread up with a ClosedWatchServiceException
+            watchService.close();
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to stop watching quests.yml", e);
+        }
+    }
+    
+    /**
+     * Remember that the plugin itself just wrote or deleted a quest file, so the
+     * resulting events are not taken for an external edit. Call after the write.
+     */
+    public void recordOwnWrite(Path file) {
+        try {
+            ownWrites.put(file.toAbsolutePath().normalize(), currentHash(file));
+        } catch (IOException e) {
+            // Unreadable right after writing - let the watcher reload
+            ownWrites.remove(file.toAbsolutePath().normalize());
+        }
+    }
+    
+    private void registerQuestsDirectory() throws IOException {
+        questsDirectory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+    
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                Set<Path> changed = new HashSet<>();
+                WatchKey key = watchService.take();
+                boolean overflow = collectChanges(key, changed);
+                key.reset();
+                if (!overflow && changed.isEmpty()) {
+                    continue;
+                }
+                
+                // Wait until the file has been quiet for a while
+                WatchKey more;
+                while ((more = watchService.poll(quietMillis, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collectChanges(more, changed);
+                    more.reset();
+                }
+                
+                // Checked only now, so the plugin has finished recording its own writes
+                changed.removeIf(this::isOwnWrite);
+                if (!overflow && changed.isEmpty()) {
+                    continue;
+                }
+                
+                if (running && plugin.isEnabled()) {
+                    if (plugin.isDebug()) {
+                        plugin.getLogger().info("Quest files changed on disk, reloading");
+                    }
+                    plugin.getServer().getScheduler().runTask(plugin, () -> plugin.getQuestManager().reload());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+    
+    /**
+     * Add the quest files a key's events touched to the given set
+     *
+     * @return True if events were lost, so any file may have changed
+     */
+    private boolean collectChanges(WatchKey key, Set<Path> changed) {
+        Path watched = (Path) key.watchable();
+        boolean inQuestsDirectory = questsDirectory.equals(watched);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            
+            Path file = watched.resolve((Path) event.context());
+            if (inQuestsDirectory) {
+                if (file.toString().endsWith(".yml")) {
+                    changed.add(file);
+                }
+            } else if (questsFile.getFileName().equals(event.context())) {
+                changed.add(file);
+            } else if (questsDirectory.getFileName().equals(event.context())
+                    && event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(questsDirectory)) {
+                // quests/ was created after the watcher started, e.g. by switching the layout
+                try {
+                    registerQuestsDirectory();
+                    // Files written into it before it was registered sent no events
+                    try (DirectoryStream<Path> files = Files.newDirectoryStream(questsDirectory, "*.yml")) {
+                        for (Path existing : files) {
+                            changed.add(existing);
+                        }
+                    }
+                } catch (IOException e) {
+                    plugin.getLogger().log(Level.WARNING, "Could not watch the quests directory for changes", e);
+                }
+            }
+        }
+        return overflow;
+    }
+    
+    /**
+     * Check whether a file's content is still what the plugin last wrote
+     */
+    private boolean isOwnWrite(Path file) {
+        Long written = ownWrites.get(file.toAbsolutePath().normalize());
+        if (written == null) {
+            return false;
+        }
+        
+        try {
+            return written == currentHash(file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * 64-bit FNV-1a hash of a file's bytes, or DELETED if it does not exist
+     */
+    private static long currentHash(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return DELETED;
+        }
+        
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : Files.readAllBytes(file)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -1,20 +1,26 @@
 package com.aethor.aethorquests.manager;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 import org.bukkit.Material;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.EntityType;
+import org.bukkit.plugin.IllegalPluginAccessException;
 
 import com.aethor.aethorquests.AethorQuestsPlugin;
 import com.aethor.aethorquests.model.Dialogue;
@@ -25,62 +31,222 @@ import com.aethor.aethorquests.model.QuestRequirements;
 import com.aethor.aethorquests.model.Reward;
 
 /**
- * Manages quest definitions loaded from quests.yml
+ * Manages quest definitions loaded from quests.yml and the quests/ directory.
+ * The quests and their lookups form an immutable catalog that is built off to the side
+ * and published through a single volatile reference, so readers on any thread
+ * (web API, trackers) always see a complete catalog, never one that is half reloaded.
  */
 public class QuestManager {
     private final AethorQuestsPlugin plugin;
-    private final Map<String, QuestDefinition> quests;
-    private File questsFile;
+    private final QuestCatalogCache catalogCache;
+    
+    private volatile QuestCatalog catalog = QuestCatalog.EMPTY;
+    
+    // Reload state, main thread only: the reload being parsed and one queued behind it
+    private CompletableFuture<Void> runningReload;
+    private CompletableFuture<Void> queuedReload;
     
     public QuestManager(AethorQuestsPlugin plugin) {
         this.plugin = plugin;
-        this.quests = new HashMap<>();
+        this.catalogCache = new QuestCatalogCache(plugin, new File(plugin.getDataFolder(), "quests.cache"));
     }
     
     /**
-     * Load all quests from quests.yml
+     * Load all quests, blocking until they are in place.
+     * Uses the compiled catalog cache if the quest files have not changed since it was written.
      */
     public void loadQuests() {
-        quests.clear();
+        List<File> files = prepareQuestFiles();
+        byte[] cacheKey = computeCacheKey(files);
+        
+        ParsedQuests cached = new ParsedQuests(catalog);
+        if (cacheKey != null && catalogCache.read(cacheKey, cached.quests, cached.hashes, cached.sourceFiles)) {
+            plugin.getLogger().info("Loaded " + cached.quests.size() + " quest(s) from the compiled cache");
+            publish(cached.quests, cached.hashes, cached.sourceFiles);
+            return;
+        }
+        
+        ParsedQuests parsed = parseQuests(files, catalog);
+        publish(parsed.quests, parsed.hashes, parsed.sourceFiles);
+        writeCache(cacheKey, parsed);
+    }
+    
+    /**
+     * Check if new quests get a file of their own under quests/ instead of going into quests.yml
+     */
+    public boolean isDirectoryLayout() {
+        return "DIRECTORY".equalsIgnoreCase(plugin.getConfig().getString("quests.layout", "FILE"));
+    }
+    
+    /**
+     * Get the file a quest was loaded from
+     *
+     * @return The file, or null if the quest was not loaded from a file (yet)
+     */
+    public File getSourceFile(String questId) {
+        return catalog.sourceFiles.get(questId);
+    }
+    
+    /**
+     * Ensure the quest source for the configured layout exists and list all quest files:
+     * quests.yml if present, then every .yml file in quests/ in name order
+     */
+    private List<File> prepareQuestFiles() {
+        File questsFile = new File(plugin.getDataFolder(), "quests.yml");
+        File questsDirectory = new File(plugin.getDataFolder(), "quests");
         
-        // Ensure quests.yml exists
-        questsFile = new File(plugin.getDataFolder(), "quests.yml");
-        if (!questsFile.exists()) {
+        if (isDirectoryLayout()) {
+            if (!questsDirectory.exists()) {
+                questsDirectory.mkdirs();
+            }
+        } else if (!questsFile.exists()) {
             plugin.saveResource("quests.yml", false);
         }
         
-        FileConfiguration config = YamlConfiguration.loadConfiguration(questsFile);
+        List<File> files = new ArrayList<>();
+        if (questsFile.exists()) {
+            files.add(questsFile);
+        }
+        
+        File[] directoryFiles = questsDirectory.listFiles((dir, name) -> name.endsWith(".yml"));
+        if (directoryFiles != null) {
+            Arrays.sort(directoryFiles);
+            files.addAll(Arrays.asList(directoryFiles));
+        }
+        return files;
+    }
+    
+    /**
+     * Parse quest files into quest definitions. Files are parsed in parallel on the common
+     * fork-join pool; the results are merged in file order. Touches no shared state,
+     * so it can run on any thread.
+     */
+    private ParsedQuests parseQuests(List<File> files, QuestCatalog previous) {
+        List<ParsedQuests> parsedFiles = files.parallelStream()
+                .map(file -> parseFile(file, previous))
+                .toList();
+        
+        ParsedQuests parsed = new ParsedQuests(previous);
+        for (ParsedQuests parsedFile : parsedFiles) {
+            parsed.changed += parsedFile.changed;
+            parsed.failed += parsedFile.failed;
+            
+            for (Map.Entry<String, QuestDefinition> entry : parsedFile.quests.entrySet()) {
+                String questId = entry.getKey();
+                File file = parsedFile.sourceFiles.get(questId);
+                
+                File existing = parsed.sourceFiles.get(questId);
+                if (existing != null) {
+                    plugin.getLogger().warning("Quest " + questId + " in " + file.getName()
+                            + " is already defined in " + existing.getName() + ", skipping");
+                    parsed.failed++;
+                    continue;
+                }
+                
+                parsed.quests.put(questId, entry.getValue());
+                parsed.hashes.put(questId, parsedFile.hashes.get(questId));
+                parsed.sourceFiles.put(questId, file);
+            }
+        }
+        
+        for (String questId : previous.quests.keySet()) {
+            if (!parsed.quests.containsKey(questId)) {
+                parsed.removed++;
+            }
+        }
+        
+        plugin.getLogger().info("Loaded " + parsed.quests.size() + " quest(s)"
+                + (files.size() > 1 ? " from " + files.size() + " files" : "")
+                + (previous.quests.isEmpty() ? "" : " (" + parsed.changed + " changed, " + parsed.removed + " removed)")
+                + (parsed.failed > 0 ? " (" + parsed.failed + " failed)" : ""));
+        return parsed;
+    }
+    
+    /**
+     * Parse a single quest file.
+     * Quests whose section hashes the same as in the previous catalog are not rebuilt;
+     * the previous definition is reused, so it keeps its identity.
+     */
+    private ParsedQuests parseFile(File file, QuestCatalog previous) {
+        ParsedQuests parsed = new ParsedQuests(previous);
+        
+        FileConfiguration config = YamlConfiguration.loadConfiguration(file);
         ConfigurationSection questsSection = config.getConfigurationSection("quests");
         
         if (questsSection == null) {
-            plugin.getLogger().warning("No quests found in quests.yml");
-            return;
+            plugin.getLogger().warning("No quests found in " + file.getName());
+            return parsed;
         }
         
-        int loaded = 0;
-        int failed = 0;
-        
         for (String questKey : questsSection.getKeys(false)) {
             try {
                 ConfigurationSection questSection = questsSection.getConfigurationSection(questKey);
                 if (questSection == null) continue;
                 
-                QuestDefinition quest = loadQuest(questSection);
-                if (quest != null) {
-                    quests.put(quest.getId(), quest);
-                    loaded++;
+                long hash = contentHash(questSection);
+                QuestDefinition quest = previous.quests.get(questSection.getString("id", ""));
+                if (quest == null || previous.hashes.getOrDefault(quest.getId(), 0L) != hash) {
+                    quest = loadQuest(questSection);
+                    if (quest == null) continue;
                     
+                    parsed.changed++;
                     if (plugin.isDebug()) {
                         plugin.getLogger().info("Loaded quest: " + quest.getId() + " - " + quest.getTitle());
                     }
                 }
+                
+                parsed.quests.put(quest.getId(), quest);
+                parsed.hashes.put(quest.getId(), hash);
+                parsed.sourceFiles.put(quest.getId(), file);
             } catch (Exception e) {
-                failed++;
-                plugin.getLogger().log(Level.SEVERE, "Failed to load quest: " + questKey, e);
+                parsed.failed++;
+                plugin.getLogger().log(Level.SEVERE, "Failed to load quest: " + questKey + " in " + file.getName(), e);
             }
         }
         
-        plugin.getLogger().info("Loaded " + loaded + " quest(s)" + (failed > 0 ? " (" + failed + " failed)" : ""));
+        return parsed;
+    }
+    
+    /**
+     * Compute the catalog cache key for the quest files
+     *
+     * @return The key, or null if the cache is disabled or the files could not be read
+     */
+    private byte[] computeCacheKey(List<File> files) {
+        if (!plugin.getConfig().getBoolean("quests.cache", true)) {
+            return null;
+        }
+        
+        try {
+            return catalogCache.computeKey(files);
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to hash quest files, not using the quest cache", e);
+            return null;
+        }
+    }
+    
+    private void writeCache(byte[] cacheKey, ParsedQuests parsed) {
+        // With the cache, a quest that failed to load would silently go missing instead of logging its error
+        if (cacheKey != null && parsed.failed == 0) {
+            catalogCache.write(cacheKey, parsed.quests, parsed.hashes, parsed.sourceFiles);
+        }
+    }
+    
+    /**
+     * 64-bit FNV-1a hash of everything in a quest's section
+     */
+    private static long contentHash(ConfigurationSection section) {
+        long hash = 0xcbf29ce484222325L;
+        for (Map.Entry<String, Object> entry : section.getValues(true).entrySet()) {
+            // Nested sections show up as their own keys, so only leaf values carry content
+            Object value = entry.getValue() instanceof ConfigurationSection ? "" : entry.getValue();
+            String text = entry.getKey() + '=' + value + '\n';
+            for (int i = 0; i < text.length(); i++) {
+                hash ^= text.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+        }
+        return hash;
     }
     
     /**
@@ -217,47 +383,215 @@ public class QuestManager {
      * Get a quest by ID
      */
     public QuestDefinition getQuest(String questId) {
-        return quests.get(questId);
+        return catalog.quests.get(questId);
     }
     
     /**
-     * Get all quests
+     * Get all quests. The collection is an unmodifiable snapshot and does not change on reload.
      */
     public Collection<QuestDefinition> getAllQuests() {
-        return quests.values();
+        return catalog.quests.values();
     }
     
     /**
      * Get quests offered by a specific NPC
      */
     public List<QuestDefinition> getQuestsByGiverNpcId(String npcId) {
-        return quests.values().stream()
-                .filter(q -> q.getGiverNpcId().equals(npcId))
-                .collect(Collectors.toList());
+        if (npcId == null) {
+            return List.of();
+        }
+        return catalog.questsByGiver.getOrDefault(npcId, List.of());
     }
     
     /**
      * Get all unique NPC IDs that have quests assigned
      */
     public Set<String> getAllNpcIds() {
-        return quests.values().stream()
-                .map(QuestDefinition::getGiverNpcId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+        return catalog.npcIds;
     }
     
     /**
      * Update an existing quest in memory
      */
     public void updateQuest(QuestDefinition quest) {
+        Map<String, QuestDefinition> quests = new LinkedHashMap<>(catalog.quests);
         quests.put(quest.getId(), quest);
+        
+        // No hash for the edited quest, so the next reload builds it from the file again
+        Map<String, Long> hashes = new HashMap<>(catalog.hashes);
+        hashes.remove(quest.getId());
+        
+        publish(quests, hashes, catalog.sourceFiles);
         plugin.getLogger().info("Updated quest in memory: " + quest.getId());
     }
     
     /**
-     * Reload all quests
+     * Reload all quests. The quest files are parsed on an async thread and the new catalog is
+     * swapped in on the main thread. Must be called from the main thread.
+     * Reloads requested while one is running are merged into a single follow-up reload,
+     * so the files are always read again after the last change.
+     *
+     * @return A future completed on the main thread once the reloaded quests are in place
      */
-    public void reload() {
-        loadQuests();
+    public CompletableFuture<Void> reload() {
+        if (runningReload == null) {
+            runningReload = new CompletableFuture<>();
+            startReload(runningReload);
+            return runningReload;
+        }
+        
+        if (queuedReload == null) {
+            queuedReload = new CompletableFuture<>();
+        }
+        return queuedReload;
+    }
+    
+    private void startReload(CompletableFuture<Void> future) {
+        if (!plugin.isEnabled()) {
+            future.completeExceptionally(new IllegalPluginAccessException("Plugin is disabled"));
+            return;
+        }
+        List<File> files = prepareQuestFiles();
+        QuestCatalog previous = catalog;
+        
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            ParsedQuests quests = null;
+            Throwable error = null;
+            try {
+                byte[] cacheKey = computeCacheKey(files);
+                quests = parseQuests(files, previous);
+                writeCache(cacheKey, quests);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.SEVERE, "Failed to reload quests", e);
+                error = e;
+            }
+            
+            ParsedQuests parsed = quests;
+            Throwable failure = error;
+            try {
+                plugin.getServer().getScheduler().runTask(plugin, () -> finishReload(future, parsed, failure));
+            } catch (IllegalPluginAccessException e) {
+                // Plugin was disabled while parsing, nothing left to swap the quests in
+                future.completeExceptionally(e);
+            }
+        });
+    }
+    
+    private void finishReload(CompletableFuture<Void> future, ParsedQuests parsed, Throwable error) {
+        // Nothing to swap in if no quest changed and the catalog was not touched while parsing
+        if (parsed != null && (parsed.changed > 0 || parsed.removed > 0 || parsed.previous != catalog)) {
+            publish(parsed.quests, parsed.hashes, parsed.sourceFiles);
+        }
+        
+        runningReload = null;
+        if (queuedReload != null) {
+            runningReload = queuedReload;
+            queuedReload = null;
+            startReload(runningReload);
+        }
+        
+        if (error != null) {
+            future.completeExceptionally(error);
+        } else {
+            future.complete(null);
+        }
+    }
+    
+    /**
+     * Fail the running and queued reloads. Called when the plugin is disabled, after which
+     * a reload still parsing can no longer be handed back to the main thread.
+     */
+    public void shutdown() {
+        IllegalPluginAccessException error = new IllegalPluginAccessException("Plugin disabled before the reload finished");
+        if (runningReload != null) {
+            runningReload.completeExceptionally(error);
+            runningReload = null;
+        }
+        if (queuedReload != null) {
+            queuedReload.completeExceptionally(error);
+            queuedReload = null;
+        }
+    }
+    
+    /**
+     * Build a catalog from the given quests and swap it in as a whole.
+     * Readers always see either the old or the new catalog, never a partial one.
+     */
+    private void publish(Map<String, QuestDefinition> quests, Map<String, Long> hashes, Map<String, File> sourceFiles) {
+        catalog = QuestCatalog.build(quests, hashes, sourceFiles);
+        
+        // Objectives may have changed under players' feet
+        if (plugin.getKillTracker() != null) {
+            plugin.getKillTracker().getSubscriptions().rebuild();
+        }
+        if (plugin.getVisitTracker() != null) {
+            plugin.getVisitTracker().rebuildGrid();
+        }
+    }
+    
+    /**
+     * Result of parsing quest files against the catalog that was live when parsing started
+     */
+    private static class ParsedQuests {
+        private final QuestCatalog previous;
+        private final Map<String, QuestDefinition> quests = new LinkedHashMap<>();
+        private final Map<String, Long> hashes = new HashMap<>();
+        private final Map<String, File> sourceFiles = new HashMap<>();
+        private int changed;
+        private int removed;
+        private int failed;
+        
+        private ParsedQuests(QuestCatalog previous) {
+            this.previous = previous;
+        }
+    }
+    
+    /**
+     * Immutable quest catalog: quests by ID, the giver NPC lookup, and the
+     * file and content hash of each quest's section
+     */
+    private static class QuestCatalog {
+        private static final QuestCatalog EMPTY = new QuestCatalog(Map.of(), Map.of(), Set.of(), Map.of(), Map.of());
+        
+        private final Map<String, QuestDefinition> quests;
+        private final Map<String, List<QuestDefinition>> questsByGiver;
+        private final Set<String> npcIds;
+        private final Map<String, Long> hashes;
+        private final Map<String, File> sourceFiles;
+        
+        private QuestCatalog(Map<String, QuestDefinition> quests, Map<String, List<QuestDefinition>> questsByGiver,
+                             Set<String> npcIds, Map<String, Long> hashes, Map<String, File> sourceFiles) {
+            this.quests = quests;
+            this.questsByGiver = questsByGiver;
+            this.npcIds = npcIds;
+            this.hashes = hashes;
+            this.sourceFiles = sourceFiles;
+        }
+        
+        private static QuestCatalog build(Map<String, QuestDefinition> quests, Map<String, Long> hashes,
+                                          Map<String, File> sourceFiles) {
+            Map<String, List<QuestDefinition>> byGiver = new HashMap<>();
+            Set<String> npcIds = new HashSet<>();
+            
+            for (QuestDefinition quest : quests.values()) {
+                // Intern every loaded quest up front, so catalog quests get the lowest ordinals
+                quest.ordinal();
+                
+                String giverNpcId = quest.getGiverNpcId();
+                if (giverNpcId == null) continue;
+                
+                byGiver.computeIfAbsent(giverNpcId, k -> new ArrayList<>()).add(quest);
+                npcIds.add(giverNpcId);
+            }
+            
+            Map<String, List<QuestDefinition>> frozen = new HashMap<>();
+            for (Map.Entry<String, List<QuestDefinition>> entry : byGiver.entrySet()) {
+                frozen.put(entry.getKey(), List.copyOf(entry.getValue()));
+            }
+            
+            // Keep file order for listings
+            return new QuestCatalog(Collections.unmodifiableMap(new LinkedHashMap<>(quests)),
+                    Map.copyOf(frozen), Set.copyOf(npcIds), Map.copyOf(hashes), Map.copyOf(sourceFiles));
+        }
     }
 }
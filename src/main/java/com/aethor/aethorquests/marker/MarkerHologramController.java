@@ -1,13 +1,11 @@
 package com.aethor.aethorquests.marker;
 
-import com.aethor.aethornpcs.api.dto.Npc;
 import com.aethor.aethorquests.AethorQuestsPlugin;
 import eu.decentsoftware.holograms.api.DHAPI;
 import eu.decentsoftware.holograms.api.holograms.Hologram;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitTask;
 
@@ -22,6 +20,7 @@ public class MarkerHologramController {
     
     private final AethorQuestsPlugin plugin;
     private final QuestMarkerService markerService;
+    private final NpcLocationCache locationCache;
     
     // Track last known state to avoid flicker
     private final Map<UUID, Map<String, MarkerState>> playerMarkerStates = new ConcurrentHashMap<>();
@@ -35,11 +34,14 @@ public class MarkerHologramController {
     // Configuration
     private static final double MARKER_Y_OFFSET = 2.5; // Above NPC nameplate
     private static final double VISIBILITY_RANGE = 48.0;
+    private static final double VISIBILITY_RANGE_SQUARED = VISIBILITY_RANGE * VISIBILITY_RANGE;
     private static final long REFRESH_INTERVAL_TICKS = 40L; // 2 seconds
     
-    public MarkerHologramController(AethorQuestsPlugin plugin, QuestMarkerService markerService) {
+    public MarkerHologramController(AethorQuestsPlugin plugin, QuestMarkerService markerService,
+                                    NpcLocationCache locationCache) {
         this.plugin = plugin;
         this.markerService = markerService;
+        this.locationCache = locationCache;
     }
     
     /**
@@ -48,6 +50,10 @@ public class MarkerHologramController {
     public void start() {
         // Start periodic refresh task
         refreshTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+            // Update NPC positions once, shared by every player's refresh
+            locationCache.track(plugin.getQuestManager().getAllNpcIds());
+            locationCache.refreshPositions();
+            
             for (Player player : Bukkit.getOnlinePlayers()) {
                 refreshMarkersForPlayer(player);
             }
@@ -72,6 +78,7 @@ public class MarkerHologramController {
         
         playerHolograms.clear();
         playerMarkerStates.clear();
+        locationCache.clear();
         
         plugin.getLogger().info("Quest marker system stopped");
     }
@@ -95,10 +102,12 @@ public class MarkerHologramController {
         Map<String, String> hologramMap = playerHolograms.computeIfAbsent(
                 player.getUniqueId(), k -> new ConcurrentHashMap<>());
         
-        // Get all NPCs with quests
-        Set<String> npcIds = plugin.getQuestManager().getAllNpcIds();
+        // Only look at quest NPCs in chunks around the player
+        Set<String> nearbyNpcIds = new HashSet<>();
+        locationCache.getSpatialIndex().collectNearby(playerLoc, VISIBILITY_RANGE, nearbyNpcIds);
         
-        for (String npcId : npcIds) {
+        Set<String> inRangeNpcIds = new HashSet<>();
+        for (String npcId : nearbyNpcIds) {
             // Get NPC location
             Optional<Location> npcLocationOpt = getNpcLocation(npcId);
             if (!npcLocationOpt.isPresent()) {
@@ -108,14 +117,13 @@ public class MarkerHologramController {
             Location npcLoc = npcLocationOpt.get();
             
             // Check if NPC is in same world and within range
-            if (!npcLoc.getWorld().equals(playerWorld) || 
-                npcLoc.distance(playerLoc) > VISIBILITY_RANGE) {
-                // Remove marker if it exists
-                removeMarkerForPlayer(player, npcId, hologramMap);
-                stateMap.remove(npcId);
+            if (!playerWorld.equals(npcLoc.getWorld()) || 
+                npcLoc.distanceSquared(playerLoc) > VISIBILITY_RANGE_SQUARED) {
                 continue;
             }
             
+            inRangeNpcIds.add(npcId);
+            
             // Compute marker state
             MarkerState newState = markerService.computeMarkerState(player, npcId);
             MarkerState oldState = stateMap.get(npcId);
@@ -126,6 +134,19 @@ public class MarkerHologramController {
                 updateMarkerForPlayer(player, npcId, npcLoc, newState, hologramMap);
             }
         }
+        
+        // Remove markers for NPCs that are no longer in range
+        for (String npcId : stateMap.keySet()) {
+            if (!inRangeNpcIds.contains(npcId)) {
+                removeMarkerForPlayer(player, npcId, hologramMap);
+                stateMap.remove(npcId);
+            }
+        }
+        for (String npcId : hologramMap.keySet()) {
+            if (!inRangeNpcIds.contains(npcId)) {
+                removeMarkerForPlayer(player, npcId, hologramMap);
+            }
+        }
     }
     
     /**
@@ -221,32 +242,7 @@ public class MarkerHologramController {
      * Gets the location of an NPC by ID
      */
     private Optional<Location> getNpcLocation(String npcId) {
-        if (!plugin.getNpcHook().isEnabled()) {
-            return Optional.empty();
-        }
-        
-        try {
-            Optional<Npc> npcOpt = plugin.getNpcHook().getApi().getNpc(npcId);
-            if (!npcOpt.isPresent()) {
-                return Optional.empty();
-            }
-            
-            Npc npc = npcOpt.get();
-            UUID entityUuid = npc.getEntityUuid();
-            
-            // Find the entity in all worlds
-            for (World world : Bukkit.getWorlds()) {
-                for (Entity entity : world.getEntities()) {
-                    if (entity.getUniqueId().equals(entityUuid)) {
-                        return Optional.of(entity.getLocation());
-                    }
-                }
-            }
-        } catch (Exception e) {
-            plugin.getLogger().warning("Error getting NPC location for " + npcId + ": " + e.getMessage());
-        }
-        
-        return Optional.empty();
+        return locationCache.getLocation(npcId);
     }
     
     /**
@@ -0,0 +1,248 @@
+package com.aethor.aethorquests.marker;
+
+import com.aethor.aethornpcs.api.dto.Npc;
+import com.aethor.aethorquests.AethorQuestsPlugin;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityTeleportEvent;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches quest NPC locations by NPC ID, shared by all players.
+ * NPC entities are resolved directly by UUID and kept up to date through
+ * entity load/unload and teleport events, so marker refreshes never scan world entities.
+ * Every position change is mirrored into an {@link NpcSpatialIndex}.
+ */
+public class NpcLocationCache implements Listener {
+    
+    private final AethorQuestsPlugin plugin;
+    
+    // NPC ID -> cached entry
+    private final Map<String, CachedNpc> entries = new ConcurrentHashMap<>();
+    
+    // Entity UUID -> NPC ID, used to match entity events to cached NPCs
+    private final Map<UUID, String> npcIdsByEntity = new ConcurrentHashMap<>();
+    
+    // Chunk buckets of every cached NPC that currently has a location
+    private final NpcSpatialIndex spatialIndex = new NpcSpatialIndex();
+    
+    // How long an unresolved NPC stays cached before we ask the NPC API again
+    private static final long RETRY_INTERVAL_MILLIS = 10_000L;
+    
+    public NpcLocationCache(AethorQuestsPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Gets the current location of an NPC.
+     * The returned location is owned by the cache and must not be modified.
+     *
+     * @param npcId The NPC ID
+     * @return The NPC location, or empty if the NPC is unknown or not loaded
+     */
+    public Optional<Location> getLocation(String npcId) {
+        CachedNpc entry = entries.get(npcId);
+        
+        if (entry == null || isStale(entry)) {
+            entry = resolve(npcId);
+        }
+        
+        return Optional.ofNullable(entry.location);
+    }
+    
+    /**
+     * Gets the spatial index of cached NPC positions
+     */
+    public NpcSpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+    
+    /**
+     * Makes sure exactly the given NPCs are cached and indexed.
+     * New NPCs are resolved, NPCs that no longer give quests are dropped
+     * and unresolved NPCs are retried once their retry interval has passed.
+     *
+     * @param npcIds IDs of all NPCs that have quests
+     */
+    public void track(Set<String> npcIds) {
+        for (String npcId : entries.keySet()) {
+            if (!npcIds.contains(npcId)) {
+                invalidate(npcId);
+            }
+        }
+        
+        for (String npcId : npcIds) {
+            CachedNpc entry = entries.get(npcId);
+            if (entry == null || isStale(entry)) {
+                resolve(npcId);
+            }
+        }
+    }
+    
+    /**
+     * Re-reads the position of every loaded NPC entity.
+     * Called once per marker refresh cycle so NPCs that walk around stay accurate
+     * without listening to per-tick movement of every entity on the server.
+     */
+    public void refreshPositions() {
+        for (CachedNpc entry : entries.values()) {
+            if (entry.entity == null) {
+                continue;
+            }
+            
+            if (!entry.entity.isValid()) {
+                // Despawned or removed - drop the stale position until it loads again
+                unbind(entry);
+                entry.resolvedAt = System.currentTimeMillis();
+                continue;
+            }
+            
+            // Copy into the existing location instance instead of allocating a new one
+            entry.entity.getLocation(entry.location);
+            spatialIndex.update(entry.npcId, entry.location);
+        }
+    }
+    
+    /**
+     * Forgets a single NPC so it is resolved again on next access
+     */
+    public void invalidate(String npcId) {
+        CachedNpc entry = entries.remove(npcId);
+        if (entry != null && entry.entityUuid != null) {
+            npcIdsByEntity.remove(entry.entityUuid);
+        }
+        spatialIndex.remove(npcId);
+    }
+    
+    /**
+     * Clears all cached NPC locations
+     */
+    public void clear() {
+        entries.clear();
+        npcIdsByEntity.clear();
+        spatialIndex.clear();
+    }
+    
+    /**
+     * Binds NPC entities when their chunk's entities are loaded
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesLoad(EntitiesLoadEvent event) {
+        for (Entity entity : event.getEntities()) {
+            CachedNpc entry = getEntryForEntity(entity.getUniqueId());
+            if (entry != null) {
+                bind(entry, entity);
+            }
+        }
+    }
+    
+    /**
+     * Drops NPC positions when their chunk's entities are unloaded
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesUnload(EntitiesUnloadEvent event) {
+        for (Entity entity : event.getEntities()) {
+            CachedNpc entry = getEntryForEntity(entity.getUniqueId());
+            if (entry != null) {
+                unbind(entry);
+            }
+        }
+    }
+    
+    /**
+     * Tracks NPCs that are teleported (e.g. moved by an admin)
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityTeleport(EntityTeleportEvent event) {
+        CachedNpc entry = getEntryForEntity(event.getEntity().getUniqueId());
+        if (entry == null || event.getTo() == null) {
+            return;
+        }
+        
+        entry.entity = event.getEntity();
+        entry.location = event.getTo().clone();
+        spatialIndex.update(entry.npcId, entry.location);
+    }
+    
+    /**
+     * Resolves an NPC through the AethorNPCS API and looks its entity up by UUID
+     */
+    private CachedNpc resolve(String npcId) {
+        invalidate(npcId);
+        
+        CachedNpc entry = new CachedNpc(npcId);
+        entry.resolvedAt = System.currentTimeMillis();
+        
+        if (plugin.getNpcHook().isEnabled()) {
+            try {
+                Optional<Npc> npcOpt = plugin.getNpcHook().getApi().getNpc(npcId);
+                if (npcOpt.isPresent() && npcOpt.get().getEntityUuid() != null) {
+                    entry.entityUuid = npcOpt.get().getEntityUuid();
+                    npcIdsByEntity.put(entry.entityUuid, npcId);
+                    
+                    Entity entity = Bukkit.getEntity(entry.entityUuid);
+                    if (entity != null && entity.isValid()) {
+                        bind(entry, entity);
+                    }
+                }
+            } catch (Exception e) {
+                plugin.getLogger().warning("Error getting NPC location for " + npcId + ": " + e.getMessage());
+            }
+        }
+        
+        entries.put(npcId, entry);
+        return entry;
+    }
+    
+    /**
+     * Unresolved NPCs are retried periodically, since they may be spawned
+     * or respawned (with a new entity UUID) after we first looked
+     */
+    private boolean isStale(CachedNpc entry) {
+        return entry.location == null
+                && System.currentTimeMillis() - entry.resolvedAt > RETRY_INTERVAL_MILLIS;
+    }
+    
+    private CachedNpc getEntryForEntity(UUID entityUuid) {
+        String npcId = npcIdsByEntity.get(entityUuid);
+        return npcId != null ? entries.get(npcId) : null;
+    }
+    
+    private void bind(CachedNpc entry, Entity entity) {
+        entry.entity = entity;
+        entry.location = entity.getLocation();
+        spatialIndex.update(entry.npcId, entry.location);
+    }
+    
+    private void unbind(CachedNpc entry) {
+        entry.entity = null;
+        entry.location = null;
+        spatialIndex.remove(entry.npcId);
+    }
+    
+    /**
+     * Cached state for a single NPC
+     */
+    private static class CachedNpc {
+        private final String npcId;
+        private UUID entityUuid;
+        private Entity entity;
+        private Location location;
+        private long resolvedAt;
+        
+        private CachedNpc(String npcId) {
+            this.npcId = npcId;
+        }
+    }
+}
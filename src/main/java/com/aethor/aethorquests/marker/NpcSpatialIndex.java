@@ -0,0 +1,137 @@
+package com.aethor.aethorquests.marker;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spatial index of quest NPC positions, bucketed by world and chunk.
+ * Lets a marker refresh look at only the chunks around a player instead of
+ * every quest NPC on the server.
+ */
+public class NpcSpatialIndex {
+    
+    // World UUID -> packed chunk key -> NPC IDs in that chunk
+    private final Map<UUID, Map<Long, Set<String>>> cells = new ConcurrentHashMap<>();
+    
+    // NPC ID -> cell the NPC is currently indexed in
+    private final Map<String, Cell> npcCells = new ConcurrentHashMap<>();
+    
+    /**
+     * Packs chunk coordinates into a single long key
+     */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkZ << 32) | (chunkX & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Moves an NPC to the cell containing the given location.
+     * Does nothing if the NPC is already indexed in that cell.
+     *
+     * @param npcId The NPC ID
+     * @param location The NPC location, or null to remove the NPC from the index
+     */
+    public void update(String npcId, Location location) {
+        if (location == null || location.getWorld() == null) {
+            remove(npcId);
+            return;
+        }
+        
+        UUID worldId = location.getWorld().getUID();
+        long key = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        
+        Cell current = npcCells.get(npcId);
+        if (current != null && current.key == key && current.worldId.equals(worldId)) {
+            return;
+        }
+        
+        remove(npcId);
+        cells.computeIfAbsent(worldId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet())
+                .add(npcId);
+        npcCells.put(npcId, new Cell(worldId, key));
+    }
+    
+    /**
+     * Removes an NPC from the index
+     */
+    public void remove(String npcId) {
+        Cell cell = npcCells.remove(npcId);
+        if (cell == null) {
+            return;
+        }
+        
+        Map<Long, Set<String>> worldCells = cells.get(cell.worldId);
+        if (worldCells == null) {
+            return;
+        }
+        
+        Set<String> npcIds = worldCells.get(cell.key);
+        if (npcIds != null) {
+            npcIds.remove(npcId);
+            if (npcIds.isEmpty()) {
+                worldCells.remove(cell.key);
+            }
+        }
+    }
+    
+    /**
+     * Collects the IDs of all NPCs in chunks that intersect the given range.
+     * Callers still need an exact distance check, since chunk cells overshoot the range.
+     *
+     * @param center Center of the query
+     * @param range Query radius in blocks
+     * @param out Collection to add the NPC IDs to
+     */
+    public void collectNearby(Location center, double range, Collection<String> out) {
+        World world = center.getWorld();
+        if (world == null) {
+            return;
+        }
+        
+        Map<Long, Set<String>> worldCells = cells.get(world.getUID());
+        if (worldCells == null || worldCells.isEmpty()) {
+            return;
+        }
+        
+        int minChunkX = (int) Math.floor(center.getX() - range) >> 4;
+        int maxChunkX = (int) Math.floor(center.getX() + range) >> 4;
+        int minChunkZ = (int) Math.floor(center.getZ() - range) >> 4;
+        int maxChunkZ = (int) Math.floor(center.getZ() + range) >> 4;
+        
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                Set<String> npcIds = worldCells.get(chunkKey(chunkX, chunkZ));
+                if (npcIds != null) {
+                    out.addAll(npcIds);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Clears the index
+     */
+    public void clear() {
+        cells.clear();
+        npcCells.clear();
+    }
+    
+    /**
+     * World and chunk key an NPC is indexed under
+     */
+    private static class Cell {
+        private final UUID worldId;
+        private final long key;
+        
+        private Cell(UUID worldId, long key) {
+            this.worldId = worldId;
+            this.key = key;
+        }
+    }
+}
@@ -74,18 +74,6 @@ public class QuestMarkerService {
         }
         
         // Check required quests completed
-        List<String> requiredQuests = quest.getRequirements().getRequiredQuestsCompleted();
-        if (requiredQuests != null && !requiredQuests.isEmpty()) {
-            for (String requiredQuestId : requiredQuests) {
-                PlayerQuestState reqState = plugin.getPlayerDataStore()
-                        .getQuestState(player.getUniqueId(), requiredQuestId);
-                
-                if (reqState == null || reqState.getStatus() != QuestStatus.TURNED_IN) {
-                    return false;
-                }
-            }
-        }
-        
-        return true;
+        return plugin.getPlayerDataStore().hasCompletedRequiredQuests(player.getUniqueId(), quest.getRequirements());
     }
 }
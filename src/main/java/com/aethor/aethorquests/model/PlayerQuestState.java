@@ -1,111 +1,155 @@
 package com.aethor.aethorquests.model;
 
 /**
- * Represents a player's state and progress for a specific quest
+ * Represents a player's state and progress for a specific quest.
+ * This is a view onto one quest of a {@link QuestStateTable}; states created
+ * with the public constructor are backed by a table of their own.
  */
 public class PlayerQuestState {
-    private final String questId;
-    private QuestStatus status;
-    private int objectiveIndex;
-    private int objectiveProgress;
-    private long acceptedTimestamp;
-    private long completedTimestamp;
-    private long turnedInTimestamp;
+    
+    // Field bits reported by getChangedFields
+    public static final int FIELD_STATUS = 1;
+    public static final int FIELD_OBJECTIVE_INDEX = 1 << 1;
+    public static final int FIELD_OBJECTIVE_PROGRESS = 1 << 2;
+    public static final int FIELD_ACCEPTED_TIMESTAMP = 1 << 3;
+    public static final int FIELD_COMPLETED_TIMESTAMP = 1 << 4;
+    public static final int FIELD_TURNED_IN_TIMESTAMP = 1 << 5;
+    
+    private final QuestStateTable table;
+    private final int ordinal;
     
     public PlayerQuestState(String questId) {
-        this.questId = questId;
-        this.status = QuestStatus.NOT_STARTED;
-        this.objectiveIndex = 0;
-        this.objectiveProgress = 0;
-        this.acceptedTimestamp = 0;
-        this.completedTimestamp = 0;
-        this.turnedInTimestamp = 0;
+        this.ordinal = QuestOrdinals.of(questId);
+        this.table = QuestStateTable.single();
+        table.create(ordinal);
+    }
+    
+    PlayerQuestState(QuestStateTable table, int ordinal) {
+        this.table = table;
+        this.ordinal = ordinal;
+    }
+    
+    /**
+     * Create an independent copy of this state, e.g. to save it off the main thread
+     */
+    public PlayerQuestState copy() {
+        PlayerQuestState copy = new PlayerQuestState(getQuestId());
+        QuestStateTable.copyState(table, copy.table, ordinal);
+        return copy;
+    }
+    
+    QuestStateTable getTable() {
+        return table;
+    }
+    
+    /**
+     * Get the interned ordinal of the quest, see {@link QuestOrdinals}
+     */
+    int ordinal() {
+        return ordinal;
     }
     
     public String getQuestId() {
-        return questId;
+        return QuestOrdinals.getQuestId(ordinal);
     }
     
     public QuestStatus getStatus() {
-        return status;
+        return table.getStatus(ordinal);
     }
     
     public void setStatus(QuestStatus status) {
-        this.status = status;
+        table.setStatus(ordinal, status);
+        table.addChangedFields(ordinal, FIELD_STATUS);
         
         // Update timestamps
         long now = System.currentTimeMillis();
-        if (status == QuestStatus.ACTIVE && acceptedTimestamp == 0) {
-            acceptedTimestamp = now;
-        } else if (status == QuestStatus.COMPLETED && completedTimestamp == 0) {
-            completedTimestamp = now;
-        } else if (status == QuestStatus.TURNED_IN && turnedInTimestamp == 0) {
-            turnedInTimestamp = now;
+        if (status == QuestStatus.ACTIVE && getAcceptedTimestamp() == 0) {
+            setAcceptedTimestamp(now);
+        } else if (status == QuestStatus.COMPLETED && getCompletedTimestamp() == 0) {
+            setCompletedTimestamp(now);
+        } else if (status == QuestStatus.TURNED_IN && getTurnedInTimestamp() == 0) {
+            setTurnedInTimestamp(now);
         }
     }
     
     public int getObjectiveIndex() {
-        return objectiveIndex;
+        return table.getObjectiveIndex(ordinal);
     }
     
     public void setObjectiveIndex(int objectiveIndex) {
-        this.objectiveIndex = objectiveIndex;
+        table.setObjectiveIndex(ordinal, objectiveIndex);
+        table.addChangedFields(ordinal, FIELD_OBJECTIVE_INDEX);
     }
     
     public int getObjectiveProgress() {
-        return objectiveProgress;
+        return table.getObjectiveProgress(ordinal);
     }
     
     public void setObjectiveProgress(int objectiveProgress) {
-        this.objectiveProgress = objectiveProgress;
+        table.setObjectiveProgress(ordinal, objectiveProgress);
+        table.addChangedFields(ordinal, FIELD_OBJECTIVE_PROGRESS);
     }
     
     public void incrementProgress(int amount) {
-        this.objectiveProgress += amount;
+        setObjectiveProgress(getObjectiveProgress() + amount);
     }
     
     public void resetProgress() {
-        this.objectiveProgress = 0;
+        setObjectiveProgress(0);
     }
     
     public void advanceToNextObjective() {
-        this.objectiveIndex++;
-        this.objectiveProgress = 0;
+        setObjectiveIndex(getObjectiveIndex() + 1);
+        setObjectiveProgress(0);
     }
     
     public long getAcceptedTimestamp() {
-        return acceptedTimestamp;
+        return table.getTimestamp(ordinal, QuestStateTable.ACCEPTED);
     }
     
     public void setAcceptedTimestamp(long acceptedTimestamp) {
-        this.acceptedTimestamp = acceptedTimestamp;
+        table.setTimestamp(ordinal, QuestStateTable.ACCEPTED, acceptedTimestamp);
+        table.addChangedFields(ordinal, FIELD_ACCEPTED_TIMESTAMP);
     }
     
     public long getCompletedTimestamp() {
-        return completedTimestamp;
+        return table.getTimestamp(ordinal, QuestStateTable.COMPLETED);
     }
     
     public void setCompletedTimestamp(long completedTimestamp) {
-        this.completedTimestamp = completedTimestamp;
+        table.setTimestamp(ordinal, QuestStateTable.COMPLETED, completedTimestamp);
+        table.addChangedFields(ordinal, FIELD_COMPLETED_TIMESTAMP);
     }
     
     public long getTurnedInTimestamp() {
-        return turnedInTimestamp;
+        return table.getTimestamp(ordinal, QuestStateTable.TURNED_IN);
     }
     
     public void setTurnedInTimestamp(long turnedInTimestamp) {
-        this.turnedInTimestamp = turnedInTimestamp;
+        table.setTimestamp(ordinal, QuestStateTable.TURNED_IN, turnedInTimestamp);
+        table.addChangedFields(ordinal, FIELD_TURNED_IN_TIMESTAMP);
+    }
+    
+    /**
+     * Get the FIELD_* bits of fields modified since the last {@link #clearChangedFields}
+     */
+    public int getChangedFields() {
+        return table.getChangedFields(ordinal);
+    }
+    
+    public void clearChangedFields() {
+        table.clearChangedFields(ordinal);
     }
     
     public boolean isActive() {
-        return status == QuestStatus.ACTIVE;
+        return getStatus() == QuestStatus.ACTIVE;
     }
     
     public boolean isCompleted() {
-        return status == QuestStatus.COMPLETED;
+        return getStatus() == QuestStatus.COMPLETED;
     }
     
     public boolean isTurnedIn() {
-        return status == QuestStatus.TURNED_IN;
+        return getStatus() == QuestStatus.TURNED_IN;
     }
 }
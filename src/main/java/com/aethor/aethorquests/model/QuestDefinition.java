@@ -16,6 +16,9 @@ public class QuestDefinition {
     private Reward rewards;
     private Dialogue dialogue;
     
+    // Interned ordinal + 1, 0 until first requested (also after deserialization, the field is transient)
+    private transient volatile int ordinal;
+    
     public QuestDefinition(String id) {
         this.id = id;
         this.description = new ArrayList<>();
@@ -29,6 +32,19 @@ public class QuestDefinition {
         return id;
     }
     
+    /**
+     * Get the interned ordinal of this quest, see {@link QuestOrdinals}.
+     * Not named like a getter so JSON mappers leave this runtime value out of the web API.
+     */
+    public int ordinal() {
+        int value = ordinal;
+        if (value == 0) {
+            value = QuestOrdinals.of(id) + 1;
+            ordinal = value;
+        }
+        return value - 1;
+    }
+    
     public String getTitle() {
         return title;
     }
@@ -0,0 +1,64 @@
+package com.aethor.aethorquests.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns quest IDs into small int ordinals that stay stable while the plugin is enabled.
+ * Quest definitions are interned when the quests are loaded, so they get the lowest
+ * ordinals; IDs that only appear in player data (removed quests) are interned when first seen.
+ * Ordinals are never reused and are not persisted - storage keeps the quest IDs.
+ */
+public final class QuestOrdinals {
+    private static final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    
+    // Ordinal -> quest ID; replaced by a larger copy when full
+    private static volatile String[] questIds = new String[64];
+    private static int count;
+    
+    private QuestOrdinals() {
+    }
+    
+    /**
+     * Get the ordinal of a quest ID, interning it if it has none yet
+     */
+    public static int of(String questId) {
+        Integer ordinal = ordinals.get(questId);
+        return ordinal != null ? ordinal : intern(questId);
+    }
+    
+    /**
+     * Get the ordinal of a quest ID without interning it
+     *
+     * @return The ordinal, or -1 if the ID was never interned
+     */
+    public static int find(String questId) {
+        Integer ordinal = ordinals.get(questId);
+        return ordinal != null ? ordinal : -1;
+    }
+    
+    /**
+     * Get the quest ID an ordinal was assigned to
+     */
+    public static String getQuestId(int ordinal) {
+        return questIds[ordinal];
+    }
+    
+    private static synchronized int intern(String questId) {
+        Integer existing = ordinals.get(questId);
+        if (existing != null) {
+            return existing;
+        }
+        
+        int ordinal = count++;
+        if (ordinal == questIds.length) {
+            questIds = Arrays.copyOf(questIds, questIds.length * 2);
+        }
+        questIds[ordinal] = questId;
+        
+        // Publish last, so anyone who sees the ordinal also sees its ID
+        ordinals.put(questId, ordinal);
+        return ordinal;
+    }
+}
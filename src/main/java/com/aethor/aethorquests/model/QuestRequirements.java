@@ -1,6 +1,7 @@
 package com.aethor.aethorquests.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -10,6 +11,9 @@ public class QuestRequirements {
     private int minLevel;
     private List<String> requiredQuestsCompleted;
     
+    // requiredQuestsCompleted as a bitmask over quest ordinals, compiled on first use
+    private transient volatile long[] requiredQuestsMask;
+    
     public QuestRequirements() {
         this.minLevel = 1;
         this.requiredQuestsCompleted = new ArrayList<>();
@@ -29,5 +33,36 @@ public class QuestRequirements {
     
     public void setRequiredQuestsCompleted(List<String> requiredQuestsCompleted) {
         this.requiredQuestsCompleted = requiredQuestsCompleted;
+        this.requiredQuestsMask = null;
+    }
+    
+    /**
+     * Get the required quests as a bitmask over quest ordinals (see {@link QuestOrdinals}),
+     * for checking them all with a few word-wise ANDs. Not a bean getter, so it stays out of the web API.
+     */
+    public long[] requiredQuestsMask() {
+        long[] mask = requiredQuestsMask;
+        if (mask == null) {
+            mask = compileMask(requiredQuestsCompleted);
+            requiredQuestsMask = mask;
+        }
+        return mask;
+    }
+    
+    private static long[] compileMask(List<String> questIds) {
+        long[] mask = new long[0];
+        if (questIds == null) {
+            return mask;
+        }
+        
+        for (String questId : questIds) {
+            int ordinal = QuestOrdinals.of(questId);
+            int word = ordinal >>> 6;
+            if (word >= mask.length) {
+                mask = Arrays.copyOf(mask, word + 1);
+            }
+            mask[word] |= 1L << ordinal;
+        }
+        return mask;
     }
 }
@@ -0,0 +1,372 @@
+package com.aethor.aethorquests.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact quest states of one player, keyed by quest ordinal (see {@link QuestOrdinals}).
+ * Only quests the player has a state for take a slot: a sorted ordinal array maps
+ * ordinals to slots, found by binary search. Per slot it holds a status byte, the
+ * objective index and progress packed into an int array, and the three timestamps
+ * in a long array - no per-quest objects or map entries. The {@link PlayerQuestState}
+ * instances it hands out are views.
+ *
+ * Not thread-safe: fill it on one thread, then publish it safely.
+ */
+public class QuestStateTable {
+    private static final QuestStatus[] STATUSES = QuestStatus.values();
+    
+    // Slots per quest in the packed arrays
+    private static final int OBJECTIVE_SLOTS = 2;
+    private static final int TIMESTAMP_SLOTS = 3;
+    
+    // Timestamp slot offsets
+    static final int ACCEPTED = 0;
+    static final int COMPLETED = 1;
+    static final int TURNED_IN = 2;
+    
+    // Quest ordinal per slot, ascending; the first size entries are used
+    private int[] ordinals;
+    // Status ordinal + 1 per slot
+    private byte[] statuses;
+    // Objective index, objective progress
+    private int[] objectives;
+    // Accepted, completed, turned-in timestamp
+    private long[] timestamps;
+    // PlayerQuestState.FIELD_* bits changed since the last clear
+    private byte[] changedFields;
+    // Bit per quest ordinal that is ACTIVE / TURNED_IN, kept up to date on every status change
+    private long[] active = new long[0];
+    private long[] turnedIn = new long[0];
+    private int activeCount;
+    private int turnedInCount;
+    private int size;
+    
+    public QuestStateTable() {
+        this(0);
+    }
+    
+    private QuestStateTable(int capacity) {
+        this.ordinals = new int[capacity];
+        this.statuses = new byte[capacity];
+        this.objectives = new int[capacity * OBJECTIVE_SLOTS];
+        this.timestamps = new long[capacity * TIMESTAMP_SLOTS];
+        this.changedFields = new byte[capacity];
+    }
+    
+    /**
+     * Create a table holding a single quest, backing a standalone state
+     */
+    static QuestStateTable single() {
+        return new QuestStateTable(1);
+    }
+    
+    /**
+     * Get the number of quests the player has a state for
+     */
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Get the state of a quest
+     *
+     * @return A view of the state, or null if the player has none
+     */
+    public PlayerQuestState get(String questId) {
+        int ordinal = QuestOrdinals.find(questId);
+        return ordinal >= 0 && contains(ordinal) ? new PlayerQuestState(this, ordinal) : null;
+    }
+    
+    /**
+     * Get the state of a quest, creating a NOT_STARTED state if there is none
+     */
+    public PlayerQuestState getOrCreate(String questId) {
+        int ordinal = QuestOrdinals.of(questId);
+        create(ordinal);
+        return new PlayerQuestState(this, ordinal);
+    }
+    
+    /**
+     * Store a state in this table, including its changed bits.
+     * States that already are views of this table are left as they are.
+     *
+     * @return The view of the stored state
+     */
+    public PlayerQuestState put(PlayerQuestState state) {
+        if (state.getTable() == this) {
+            return state;
+        }
+        
+        int ordinal = state.ordinal();
+        create(ordinal);
+        copyState(state.getTable(), this, ordinal);
+        changedFields[slot(ordinal)] = (byte) state.getChangedFields();
+        return new PlayerQuestState(this, ordinal);
+    }
+    
+    /**
+     * Get views of all states in the table
+     */
+    public List<PlayerQuestState> values() {
+        List<PlayerQuestState> states = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            states.add(new PlayerQuestState(this, ordinals[i]));
+        }
+        return states;
+    }
+    
+    /**
+     * Create an independent copy of the table, without changed bits
+     */
+    public QuestStateTable copy() {
+        QuestStateTable copy = new QuestStateTable(0);
+        copy.ordinals = ordinals.clone();
+        copy.statuses = statuses.clone();
+        copy.objectives = objectives.clone();
+        copy.timestamps = timestamps.clone();
+        copy.changedFields = new byte[statuses.length];
+        copy.active = active.clone();
+        copy.turnedIn = turnedIn.clone();
+        copy.activeCount = activeCount;
+        copy.turnedInCount = turnedInCount;
+        copy.size = size;
+        return copy;
+    }
+    
+    /**
+     * Get views of the ACTIVE states only, without looking at any other state
+     */
+    public List<PlayerQuestState> getActive() {
+        return collect(active, activeCount);
+    }
+    
+    /**
+     * Get views of the TURNED_IN states only
+     */
+    public List<PlayerQuestState> getTurnedIn() {
+        return collect(turnedIn, turnedInCount);
+    }
+    
+    /**
+     * Get the next ACTIVE quest ordinal, for iterating without allocating:
+     * {@code for (int o = table.nextActive(0); o >= 0; o = table.nextActive(o + 1))}
+     *
+     * @return The ordinal, or -1 if there are no more active quests
+     */
+    public int nextActive(int fromOrdinal) {
+        return nextSetBit(active, fromOrdinal);
+    }
+    
+    /**
+     * Get a view of the state of a quest by ordinal
+     *
+     * @return The view, or null if the player has no state for the quest
+     */
+    public PlayerQuestState get(int ordinal) {
+        return contains(ordinal) ? new PlayerQuestState(this, ordinal) : null;
+    }
+    
+    /**
+     * Check if the player turned in a quest
+     */
+    public boolean isTurnedIn(int ordinal) {
+        int word = ordinal >>> 6;
+        return word < turnedIn.length && (turnedIn[word] & (1L << ordinal)) != 0;
+    }
+    
+    /**
+     * Check if the player turned in every quest of an ordinal bitmask
+     */
+    public boolean isTurnedInAll(long[] mask) {
+        for (int word = 0; word < mask.length; word++) {
+            long have = word < turnedIn.length ? turnedIn[word] : 0L;
+            if ((mask[word] & ~have) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    boolean contains(int ordinal) {
+        return Arrays.binarySearch(ordinals, 0, size, ordinal) >= 0;
+    }
+    
+    /**
+     * Get the slot of a quest the table has a state for
+     */
+    private int slot(int ordinal) {
+        int slot = Arrays.binarySearch(ordinals, 0, size, ordinal);
+        if (slot < 0) {
+            throw new IllegalArgumentException("No state for quest ordinal " + ordinal);
+        }
+        return slot;
+    }
+    
+    /**
+     * Add a NOT_STARTED state for a quest unless there already is one
+     */
+    void create(int ordinal) {
+        int found = Arrays.binarySearch(ordinals, 0, size, ordinal);
+        if (found >= 0) {
+            return;
+        }
+        
+        if (size == statuses.length) {
+            grow(size + 1);
+        }
+        
+        // Shift the later slots up to keep the ordinals sorted
+        int slot = -found - 1;
+        int moved = size - slot;
+        System.arraycopy(ordinals, slot, ordinals, slot + 1, moved);
+        System.arraycopy(statuses, slot, statuses, slot + 1, moved);
+        System.arraycopy(changedFields, slot, changedFields, slot + 1, moved);
+        System.arraycopy(objectives, slot * OBJECTIVE_SLOTS, objectives, (slot + 1) * OBJECTIVE_SLOTS, moved * OBJECTIVE_SLOTS);
+        System.arraycopy(timestamps, slot * TIMESTAMP_SLOTS, timestamps, (slot + 1) * TIMESTAMP_SLOTS, moved * TIMESTAMP_SLOTS);
+        
+        ordinals[slot] = ordinal;
+        statuses[slot] = (byte) (QuestStatus.NOT_STARTED.ordinal() + 1);
+        changedFields[slot] = 0;
+        Arrays.fill(objectives, slot * OBJECTIVE_SLOTS, (slot + 1) * OBJECTIVE_SLOTS, 0);
+        Arrays.fill(timestamps, slot * TIMESTAMP_SLOTS, (slot + 1) * TIMESTAMP_SLOTS, 0L);
+        size++;
+    }
+    
+    private void grow(int minCapacity) {
+        // Players hold few states, so grow in small steps
+        int capacity = Math.max(minCapacity, statuses.length + 8);
+        ordinals = Arrays.copyOf(ordinals, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        objectives = Arrays.copyOf(objectives, capacity * OBJECTIVE_SLOTS);
+        timestamps = Arrays.copyOf(timestamps, capacity * TIMESTAMP_SLOTS);
+        changedFields = Arrays.copyOf(changedFields, capacity);
+    }
+    
+    QuestStatus getStatus(int ordinal) {
+        return STATUSES[statuses[slot(ordinal)] - 1];
+    }
+    
+    void setStatus(int ordinal, QuestStatus status) {
+        int slot = slot(ordinal);
+        QuestStatus previous = STATUSES[statuses[slot] - 1];
+        statuses[slot] = (byte) (status.ordinal() + 1);
+        if (previous == status) {
+            return;
+        }
+        
+        if (previous == QuestStatus.ACTIVE) {
+            clearBit(active, ordinal);
+            activeCount--;
+        } else if (previous == QuestStatus.TURNED_IN) {
+            clearBit(turnedIn, ordinal);
+            turnedInCount--;
+        }
+        
+        if (status == QuestStatus.ACTIVE) {
+            active = setBit(active, ordinal);
+            activeCount++;
+        } else if (status == QuestStatus.TURNED_IN) {
+            turnedIn = setBit(turnedIn, ordinal);
+            turnedInCount++;
+        }
+    }
+    
+    /**
+     * Get the objective index of a quest the player has a state for
+     */
+    public int getObjectiveIndex(int ordinal) {
+        return objectives[slot(ordinal) * OBJECTIVE_SLOTS];
+    }
+    
+    void setObjectiveIndex(int ordinal, int objectiveIndex) {
+        objectives[slot(ordinal) * OBJECTIVE_SLOTS] = objectiveIndex;
+    }
+    
+    int getObjectiveProgress(int ordinal) {
+        return objectives[slot(ordinal) * OBJECTIVE_SLOTS + 1];
+    }
+    
+    void setObjectiveProgress(int ordinal, int objectiveProgress) {
+        objectives[slot(ordinal) * OBJECTIVE_SLOTS + 1] = objectiveProgress;
+    }
+    
+    long getTimestamp(int ordinal, int which) {
+        return timestamps[slot(ordinal) * TIMESTAMP_SLOTS + which];
+    }
+    
+    void setTimestamp(int ordinal, int which, long timestamp) {
+        timestamps[slot(ordinal) * TIMESTAMP_SLOTS + which] = timestamp;
+    }
+    
+    int getChangedFields(int ordinal) {
+        return changedFields[slot(ordinal)];
+    }
+    
+    void addChangedFields(int ordinal, int fields) {
+        changedFields[slot(ordinal)] |= (byte) fields;
+    }
+    
+    void clearChangedFields(int ordinal) {
+        changedFields[slot(ordinal)] = 0;
+    }
+    
+    private List<PlayerQuestState> collect(long[] bits, int count) {
+        List<PlayerQuestState> states = new ArrayList<>(count);
+        for (int ordinal = nextSetBit(bits, 0); ordinal >= 0; ordinal = nextSetBit(bits, ordinal + 1)) {
+            states.add(new PlayerQuestState(this, ordinal));
+        }
+        return states;
+    }
+    
+    private static long[] setBit(long[] bits, int ordinal) {
+        int word = ordinal >>> 6;
+        if (word >= bits.length) {
+            bits = Arrays.copyOf(bits, word + 1);
+        }
+        bits[word] |= 1L << ordinal;
+        return bits;
+    }
+    
+    private static void clearBit(long[] bits, int ordinal) {
+        int word = ordinal >>> 6;
+        if (word < bits.length) {
+            bits[word] &= ~(1L << ordinal);
+        }
+    }
+    
+    private static int nextSetBit(long[] bits, int from) {
+        int word = from >>> 6;
+        if (from < 0 || word >= bits.length) {
+            return -1;
+        }
+        
+        long remaining = bits[word] & (-1L << from);
+        while (true) {
+            if (remaining != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(remaining);
+            }
+            if (++word == bits.length) {
+                return -1;
+            }
+            remaining = bits[word];
+        }
+    }
+    
+    /**
+     * Copy one quest's values between tables, leaving the changed bits alone
+     */
+    static void copyState(QuestStateTable from, QuestStateTable to, int ordinal) {
+        to.setStatus(ordinal, from.getStatus(ordinal));
+        to.setObjectiveIndex(ordinal, from.getObjectiveIndex(ordinal));
+        to.setObjectiveProgress(ordinal, from.getObjectiveProgress(ordinal));
+        for (int which = 0; which < TIMESTAMP_SLOTS; which++) {
+            to.setTimestamp(ordinal, which, from.getTimestamp(ordinal, which));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.aethor.aethorquests.storage;
+
+import com.aethor.aethorquests.AethorQuestsPlugin;
+import com.aethor.aethorquests.model.PlayerQuestState;
+import com.aethor.aethorquests.model.QuestStatus;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores each player's quest states in a compact binary file, playerdata/{uuid}.dat.
+ *
+ * Layout: magic, format version, record count, then one record per quest:
+ * the quest ID followed by every field varint-encoded. Players that still have a
+ * legacy .yml file are migrated the first time they are loaded.
+ */
+public class BinaryPlayerStorage extends FilePlayerStorage {
+    
+    // "AQPD"
+    private static final int MAGIC = 0x41515044;
+    private static final int VERSION = 2;
+    // Version 1 wrote a table of all quest IDs first and referred to it by index
+    private static final int VERSION_ID_TABLE = 1;
+    
+    private static final QuestStatus[] STATUSES = QuestStatus.values();
+    
+    private final AethorQuestsPlugin plugin;
+    private final YamlPlayerStorage legacyStorage;
+    
+    public BinaryPlayerStorage(AethorQuestsPlugin plugin, File playerDataFolder) {
+        super(playerDataFolder);
+        this.plugin = plugin;
+        this.legacyStorage = new YamlPlayerStorage(playerDataFolder);
+    }
+    
+    @Override
+    public Map<String, PlayerQuestState> load(UUID playerId) throws IOException {
+        File playerFile = getPlayerFile(playerId);
+        if (!playerFile.exists()) {
+            return migrate(playerId);
+        }
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(playerFile.toPath())))) {
+            return readStates(in);
+        }
+    }
+    
+    @Override
+    protected void write(File file, Collection<PlayerQuestState> states) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+            writeStates(out, states);
+        }
+    }
+    
+    @Override
+    protected String getFileExtension() {
+        return ".dat";
+    }
+    
+    /**
+     * Converts a legacy YAML file to the binary format.
+     * The YAML file is kept as .yml.migrated rather than deleted.
+     */
+    private Map<String, PlayerQuestState> migrate(UUID playerId) throws IOException {
+        File legacyFile = legacyStorage.getPlayerFile(playerId);
+        if (!legacyFile.exists()) {
+            return null;
+        }
+        
+        Map<String, PlayerQuestState> states = legacyStorage.load(playerId);
+        save(playerId, states.values());
+        
+        File migratedFile = new File(playerDataFolder, legacyFile.getName() + ".migrated");
+        if (!legacyFile.renameTo(migratedFile)) {
+            plugin.getLogger().warning("Migrated player data for " + playerId + " but could not rename " + legacyFile.getName());
+        } else if (plugin.isDebug()) {
+            plugin.getLogger().info("Migrated player data for " + playerId + " to binary format");
+        }
+        
+        return states;
+    }
+    
+    /**
+     * Writes quest states in the binary format
+     */
+    public static void writeStates(DataOutput out, Collection<PlayerQuestState> states) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        
+        VarInt.writeVarInt(out, states.size());
+        for (PlayerQuestState state : states) {
+            VarInt.writeString(out, state.getQuestId());
+            out.writeByte(state.getStatus().ordinal());
+            VarInt.writeVarInt(out, state.getObjectiveIndex());
+            VarInt.writeVarInt(out, state.getObjectiveProgress());
+            VarInt.writeVarLong(out, state.getAcceptedTimestamp());
+            VarInt.writeVarLong(out, state.getCompletedTimestamp());
+            VarInt.writeVarLong(out, state.getTurnedInTimestamp());
+        }
+    }
+    
+    /**
+     * Reads quest states written by {@link #writeStates}
+     */
+    public static Map<String, PlayerQuestState> readStates(DataInput in) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a player data file (bad magic " + Integer.toHexString(magic) + ")");
+        }
+        
+        int version = in.readUnsignedByte();
+        if (version != VERSION && version != VERSION_ID_TABLE) {
+            throw new IOException("Unsupported player data version " + version);
+        }
+        
+        int count = VarInt.readVarInt(in);
+        List<String> questIds = null;
+        if (version == VERSION_ID_TABLE) {
+            questIds = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                questIds.add(VarInt.readString(in));
+            }
+        }
+        
+        Map<String, PlayerQuestState> questStates = new ConcurrentHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String questId;
+            if (questIds != null) {
+                int questIndex = VarInt.readVarInt(in);
+                if (questIndex < 0 || questIndex >= questIds.size()) {
+                    throw new IOException("Quest index out of range: " + questIndex);
+                }
+                questId = questIds.get(questIndex);
+            } else {
+                questId = VarInt.readString(in);
+            }
+            
+            int status = in.readUnsignedByte();
+            if (status >= STATUSES.length) {
+                throw new IOException("Unknown quest status " + status);
+            }
+            
+            PlayerQuestState state = new PlayerQuestState(questId);
+            state.setStatus(STATUSES[status]);
+            state.setObjectiveIndex(VarInt.readVarInt(in));
+            state.setObjectiveProgress(VarInt.readVarInt(in));
+            state.setAcceptedTimestamp(VarInt.readVarLong(in));
+            state.setCompletedTimestamp(VarInt.readVarLong(in));
+            state.setTurnedInTimestamp(VarInt.readVarLong(in));
+            
+            questStates.put(state.getQuestId(), state);
+        }
+        
+        return questStates;
+    }
+}
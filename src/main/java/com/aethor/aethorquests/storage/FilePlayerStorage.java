@@ -0,0 +1,132 @@
+package com.aethor.aethorquests.storage;
+
+import com.aethor.aethorquests.model.PlayerQuestState;
+import com.aethor.aethorquests.model.QuestStatus;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Base for backends that keep one file per player.
+ * Files are never written in place: data goes to a temp file, is synced,
+ * and then atomically renamed over the old file, so a crash mid-write
+ * leaves either the old or the new file intact.
+ */
+public abstract class FilePlayerStorage implements PlayerStorage {
+    protected final File playerDataFolder;
+    
+    protected FilePlayerStorage(File playerDataFolder) {
+        this.playerDataFolder = playerDataFolder;
+    }
+    
+    /**
+     * Get the extension of player data files, including the dot
+     */
+    protected abstract String getFileExtension();
+    
+    /**
+     * Get the file a player's data is stored in
+     */
+    public File getPlayerFile(UUID playerId) {
+        return new File(playerDataFolder, playerId.toString() + getFileExtension());
+    }
+    
+    /**
+     * Write quest states to the given file, replacing its contents
+     */
+    protected abstract void write(File file, Collection<PlayerQuestState> states) throws IOException;
+    
+    @Override
+    public void save(UUID playerId, Collection<PlayerQuestState> states) throws IOException {
+        saveBatch(Map.of(playerId, states));
+    }
+    
+    @Override
+    public boolean supportsParallelWrites() {
+        // One file per player
+        return true;
+    }
+    
+    /**
+     * Files have no index - this reads every player file in the folder
+     */
+    @Override
+    public List<UUID> findPlayers(String questId, QuestStatus status) throws IOException {
+        List<UUID> players = new ArrayList<>();
+        String extension = getFileExtension();
+        
+        File[] files = playerDataFolder.listFiles((dir, name) -> name.endsWith(extension));
+        if (files == null) {
+            return players;
+        }
+        
+        for (File file : files) {
+            UUID playerId;
+            try {
+                playerId = UUID.fromString(file.getName().substring(0, file.getName().length() - extension.length()));
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            
+            Map<String, PlayerQuestState> states = load(playerId);
+            PlayerQuestState state = states != null ? states.get(questId) : null;
+            if (state != null && state.getStatus() == status) {
+                players.add(playerId);
+            }
+        }
+        return players;
+    }
+    
+    /**
+     * Group commit: all temp files are written first, then synced in one pass
+     * and only then renamed into place
+     */
+    @Override
+    public void saveBatch(Map<UUID, Collection<PlayerQuestState>> batch) throws IOException {
+        List<File> tempFiles = new ArrayList<>(batch.size());
+        List<File> targetFiles = new ArrayList<>(batch.size());
+        
+        for (Map.Entry<UUID, Collection<PlayerQuestState>> entry : batch.entrySet()) {
+            File target = getPlayerFile(entry.getKey());
+            File temp = new File(target.getPath() + ".tmp");
+            write(temp, entry.getValue());
+            
+            tempFiles.add(temp);
+            targetFiles.add(target);
+        }
+        
+        for (File temp : tempFiles) {
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+        }
+        
+        for (int i = 0; i < tempFiles.size(); i++) {
+            Files.move(tempFiles.get(i).toPath(), targetFiles.get(i).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        
+        syncDirectory();
+    }
+    
+    /**
+     * Persist the renames. Not supported on every platform, in which case
+     * the renames are still atomic, just not guaranteed durable yet.
+     */
+    private void syncDirectory() {
+        try (FileChannel channel = FileChannel.open(playerDataFolder.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories can't be opened for syncing on Windows
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.aethor.aethorquests.storage;
+
+import com.aethor.aethorquests.model.PlayerQuestState;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The per-player .dat and .yml files of the BINARY and YAML backends, read for
+ * importing into a backend that keeps all players together. Both formats are
+ * parsed directly - a .yml file is not converted to .dat on the way.
+ * Imported files are kept as .migrated rather than deleted.
+ */
+class LegacyPlayerFiles {
+    private static final String[] EXTENSIONS = {".dat", ".yml"};
+    
+    private final File playerDataFolder;
+    private final YamlPlayerStorage yamlStorage;
+    
+    LegacyPlayerFiles(File playerDataFolder) {
+        this.playerDataFolder = playerDataFolder;
+        this.yamlStorage = new YamlPlayerStorage(playerDataFolder);
+    }
+    
+    /**
+     * Get the IDs of all players that still have a file to import
+     */
+    List<UUID> listPlayerIds() {
+        Set<UUID> playerIds = new LinkedHashSet<>();
+        File[] files = playerDataFolder.listFiles();
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        
+        for (File file : files) {
+            String name = file.getName();
+            for (String extension : EXTENSIONS) {
+                if (!name.endsWith(extension)) continue;
+                
+                try {
+                    playerIds.add(UUID.fromString(name.substring(0, name.length() - extension.length())));
+                } catch (IllegalArgumentException ignored) {
+                    // Not a player file
+                }
+            }
+        }
+        return new ArrayList<>(playerIds);
+    }
+    
+    /**
+     * Read a player's file. A .dat file is newer than a .yml one, so it wins.
+     *
+     * @return Quest ID -> state, or null if the player has no file
+     */
+    Map<String, PlayerQuestState> read(UUID playerId) throws IOException {
+        File binaryFile = getFile(playerId, ".dat");
+        if (binaryFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(binaryFile.toPath())))) {
+                return BinaryPlayerStorage.readStates(in);
+            }
+        }
+        return yamlStorage.load(playerId);
+    }
+    
+    /**
+     * Rename a player's files to .migrated so they are not imported again
+     *
+     * @return The name of a file that could not be renamed, or null if all were
+     */
+    String markMigrated(UUID playerId) {
+        for (String extension : EXTENSIONS) {
+            File file = getFile(playerId, extension);
+            if (file.exists() && !file.renameTo(new File(playerDataFolder, file.getName() + ".migrated"))) {
+                return file.getName();
+            }
+        }
+        return null;
+    }
+    
+    private File getFile(UUID playerId, String extension) {
+        return new File(playerDataFolder, playerId + extension);
+    }
+}
@@ -0,0 +1,82 @@
+package com.aethor.aethorquests.storage;
+
+import com.aethor.aethorquests.model.PlayerQuestState;
+import com.aethor.aethorquests.model.QuestStatus;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Backend that persists player quest states
+ */
+public interface PlayerStorage {
+    
+    /**
+     * Load all quest states stored for a player
+     *
+     * @param playerId The player UUID
+     * @return Quest ID -> state, or null if nothing is stored for the player
+     */
+    Map<String, PlayerQuestState> load(UUID playerId) throws IOException;
+    
+    /**
+     * Replace the stored quest states of a player
+     *
+     * @param playerId The player UUID
+     * @param states All quest states of the player
+     */
+    void save(UUID playerId, Collection<PlayerQuestState> states) throws IOException;
+    
+    /**
+     * Replace the stored quest states of several players at once.
+     * Backends can override this to commit the whole batch together.
+     *
+     * @param batch Player UUID -> all quest states of that player
+     */
+    default void saveBatch(Map<UUID, Collection<PlayerQuestState>> batch) throws IOException {
+        for (Map.Entry<UUID, Collection<PlayerQuestState>> entry : batch.entrySet()) {
+            save(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * Check whether saveBatch may be called from several threads at once for
+     * disjoint players, and actually runs the calls in parallel
+     */
+    default boolean supportsParallelWrites() {
+        return false;
+    }
+    
+    /**
+     * Find the stored players that have a quest in the given status
+     *
+     * @param questId The quest ID
+     * @param status The status to match
+     * @return UUIDs of the matching players
+     */
+    List<UUID> findPlayers(String questId, QuestStatus status) throws IOException;
+    
+    /**
+     * Import player files of another format in one go, so findPlayers sees every player.
+     * Called once off the main thread after the backend is created; stops when it is closed.
+     */
+    default void importLegacyData() {
+    }
+    
+    /**
+     * Check whether findPlayers covers every stored player.
+     * False while {@link #importLegacyData} is still running.
+     */
+    default boolean isFindComplete() {
+        return true;
+    }
+    
+    /**
+     * Release the backend's resources. Called once after the last save.
+     */
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,476 @@
+package com.aethor.aethorquests.storage;
+
+import com.aethor.aethorquests.model.PlayerQuestState;
+import com.aethor.aethorquests.model.QuestStatus;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Append-only journal of quest progress changes, written between full saves.
+ *
+ * Each change is recorded as (player, quest, field, value) with players and
+ * quests replaced by small ordinals defined at their first use in a segment.
+ * Appends only encode into a memory buffer; the buffer is written to the
+ * current segment file by {@link #flush()}, optionally followed by an fsync.
+ * A segment boundary is only marked in memory ({@link #markBoundary()}); the old
+ * segment is written out, sealed and the next one opened by whichever I/O call comes next.
+ * Once the full snapshot store has caught up, sealed segments are deleted.
+ */
+public class ProgressJournal {
+    
+    private static final byte RECORD_DEFINE_PLAYER = 1;
+    private static final byte RECORD_DEFINE_QUEST = 2;
+    private static final byte RECORD_FIELD = 3;
+    
+    // Field codes, in the order of the PlayerQuestState.FIELD_* bits
+    private static final int FIELD_COUNT = 6;
+    
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    
+    private static final QuestStatus[] STATUSES = QuestStatus.values();
+    
+    private final File directory;
+    private final boolean fsync;
+    
+    // Guards the buffer, the ordinal tables and the boundaries (taken by appends on the main thread)
+    private final Object bufferLock = new Object();
+    
+    // Guards the segment file (taken by flush and seal)
+    private final Object ioLock = new Object();
+    
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+    private final DataOutputStream bufferOut = new DataOutputStream(buffer);
+    private final Map<UUID, Integer> playerOrdinals = new HashMap<>();
+    private final Map<String, Integer> questOrdinals = new HashMap<>();
+    
+    // Segment the buffered records belong to, ahead of segmentId while boundaries are unsealed
+    private long bufferSegmentId;
+    // Last records of each segment marked but not sealed yet, oldest first
+    private final ArrayDeque<byte[]> unsealedTails = new ArrayDeque<>();
+    
+    // Segment the open file belongs to
+    private long segmentId;
+    private long firstSessionSegmentId;
+    private FileChannel channel;
+    private long segmentSize;
+    
+    public ProgressJournal(File directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+    
+    /**
+     * Start a new segment after any existing ones
+     */
+    public void open() throws IOException {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        
+        List<Long> existing = listSegmentIds();
+        synchronized (ioLock) {
+            segmentId = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+            firstSessionSegmentId = segmentId;
+            synchronized (bufferLock) {
+                bufferSegmentId = segmentId;
+            }
+            openSegment();
+        }
+    }
+    
+    /**
+     * Record every changed field of a quest state and clear its changed bits.
+     * Only encodes into memory - nothing is written until the next flush.
+     */
+    public void append(UUID playerId, PlayerQuestState state) {
+        int changed = state.getChangedFields();
+        if (changed == 0) {
+            return;
+        }
+        
+        synchronized (bufferLock) {
+            try {
+                int playerOrdinal = getPlayerOrdinal(playerId);
+                int questOrdinal = getQuestOrdinal(state.getQuestId());
+                
+                for (int field = 0; field < FIELD_COUNT; field++) {
+                    if ((changed & (1 << field)) == 0) continue;
+                    
+                    bufferOut.writeByte(RECORD_FIELD);
+                    VarInt.writeVarInt(bufferOut, playerOrdinal);
+                    VarInt.writeVarInt(bufferOut, questOrdinal);
+                    bufferOut.writeByte(field);
+                    VarInt.writeVarLong(bufferOut, getField(state, field));
+                }
+            } catch (IOException e) {
+                // Writing to a byte array does not fail
+                throw new IllegalStateException(e);
+            }
+        }
+        
+        state.clearChangedFields();
+    }
+    
+    /**
+     * Write buffered records to the current segment
+     */
+    public void flush() throws IOException {
+        synchronized (ioLock) {
+            writeToSegment(drainCurrent());
+        }
+    }
+    
+    /**
+     * End the current segment: records appended after this call go to the next one.
+     * Only touches memory, so it is cheap enough for the main thread; the segment
+     * file is sealed by {@link #sealSegments()} or the next flush.
+     *
+     * @return ID of the ended segment, to pass to {@link #deleteSegmentsUpTo} once
+     *         everything recorded in it has been saved to the snapshot store
+     */
+    public long markBoundary() {
+        synchronized (bufferLock) {
+            unsealedTails.add(drainBuffer());
+            
+            // Ordinals are defined per segment so each segment replays on its own
+            playerOrdinals.clear();
+            questOrdinals.clear();
+            return bufferSegmentId++;
+        }
+    }
+    
+    /**
+     * Write out, sync and close every segment ended by {@link #markBoundary()} so far,
+     * and open the segment new records go to
+     */
+    public void sealSegments() throws IOException {
+        synchronized (ioLock) {
+            sealUnsealed();
+        }
+    }
+    
+    /**
+     * Delete this session's sealed segments up to and including the given one
+     */
+    public void deleteSegmentsUpTo(long sealedSegmentId) {
+        synchronized (ioLock) {
+            // Never delete the segment that is still being written
+            long upTo = Math.min(sealedSegmentId, segmentId - 1);
+            for (long id : listSegmentIds()) {
+                if (id >= firstSessionSegmentId && id <= upTo) {
+                    getSegmentFile(id).delete();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Flush and close the journal. The current segment is removed if nothing was written to it.
+     */
+    public void close() throws IOException {
+        synchronized (ioLock) {
+            writeToSegment(drainCurrent());
+            boolean empty = segmentSize == 0;
+            closeSegment();
+            
+            if (empty) {
+                getSegmentFile(segmentId).delete();
+            }
+        }
+    }
+    
+    /**
+     * Read all segments left over from a previous run, e.g. after a crash
+     */
+    public Recovery recover() throws IOException {
+        Recovery recovery = new Recovery();
+        
+        for (long id : listSegmentIds()) {
+            readSegment(getSegmentFile(id), recovery);
+        }
+        return recovery;
+    }
+    
+    /**
+     * Rename all existing segments so they are neither replayed nor deleted, for manual inspection
+     */
+    public void quarantineSegments() {
+        for (long id : listSegmentIds()) {
+            File file = getSegmentFile(id);
+            file.renameTo(new File(directory, file.getName() + ".failed"));
+        }
+    }
+    
+    /**
+     * Delete all existing segments
+     */
+    public void deleteAllSegments() {
+        for (long id : listSegmentIds()) {
+            getSegmentFile(id).delete();
+        }
+    }
+    
+    private int getPlayerOrdinal(UUID playerId) throws IOException {
+        Integer ordinal = playerOrdinals.get(playerId);
+        if (ordinal == null) {
+            ordinal = playerOrdinals.size();
+            playerOrdinals.put(playerId, ordinal);
+            
+            bufferOut.writeByte(RECORD_DEFINE_PLAYER);
+            VarInt.writeVarInt(bufferOut, ordinal);
+            bufferOut.writeLong(playerId.getMostSignificantBits());
+            bufferOut.writeLong(playerId.getLeastSignificantBits());
+        }
+        return ordinal;
+    }
+    
+    private int getQuestOrdinal(String questId) throws IOException {
+        Integer ordinal = questOrdinals.get(questId);
+        if (ordinal == null) {
+            ordinal = questOrdinals.size();
+            questOrdinals.put(questId, ordinal);
+            
+            bufferOut.writeByte(RECORD_DEFINE_QUEST);
+            VarInt.writeVarInt(bufferOut, ordinal);
+            VarInt.writeString(bufferOut, questId);
+        }
+        return ordinal;
+    }
+    
+    private byte[] drainBuffer() {
+        synchronized (bufferLock) {
+            byte[] data = buffer.toByteArray();
+            buffer.reset();
+            return data;
+        }
+    }
+    
+    /**
+     * Seal pending segments, then drain the records of the open segment (hold ioLock)
+     */
+    private byte[] drainCurrent() throws IOException {
+        while (true) {
+            sealUnsealed();
+            synchronized (bufferLock) {
+                // A boundary marked meanwhile would put later records into the wrong segment
+                if (bufferSegmentId == segmentId) {
+                    return drainBuffer();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Catch the segment file up with the boundaries marked so far (hold ioLock)
+     */
+    private void sealUnsealed() throws IOException {
+        while (true) {
+            byte[] tail;
+            synchronized (bufferLock) {
+                if (segmentId >= bufferSegmentId) {
+                    return;
+                }
+                tail = unsealedTails.peek();
+            }
+            
+            writeToSegment(tail);
+            closeSegment();
+            synchronized (bufferLock) {
+                unsealedTails.poll();
+            }
+            segmentId++;
+            openSegment();
+        }
+    }
+    
+    private void writeToSegment(byte[] data) throws IOException {
+        if (data.length == 0 || channel == null) {
+            return;
+        }
+        
+        ByteBuffer byteBuffer = ByteBuffer.wrap(data);
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+        segmentSize += data.length;
+        
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+    
+    private void openSegment() throws IOException {
+        channel = FileChannel.open(getSegmentFile(segmentId).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = channel.size();
+    }
+    
+    private void closeSegment() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+    }
+    
+    private File getSegmentFile(long id) {
+        return new File(directory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+    
+    private List<Long> listSegmentIds() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        
+        List<Long> ids = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) continue;
+            
+            try {
+                ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            } catch (NumberFormatException ignored) {
+                // Not one of ours
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+    
+    private void readSegment(File file, Recovery recovery) throws IOException {
+        Map<Integer, UUID> players = new HashMap<>();
+        Map<Integer, String> quests = new HashMap<>();
+        
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            while (true) {
+                int type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                
+                try {
+                    switch (type) {
+                        case RECORD_DEFINE_PLAYER:
+                            players.put(VarInt.readVarInt(in), new UUID(in.readLong(), in.readLong()));
+                            break;
+                        case RECORD_DEFINE_QUEST:
+                            quests.put(VarInt.readVarInt(in), VarInt.readString(in));
+                            break;
+                        case RECORD_FIELD:
+                            UUID playerId = players.get(VarInt.readVarInt(in));
+                            String questId = quests.get(VarInt.readVarInt(in));
+                            int field = in.readUnsignedByte();
+                            long value = VarInt.readVarLong(in);
+                            if (playerId == null || questId == null || field >= FIELD_COUNT) {
+                                throw new IOException("Corrupt record in " + file.getName());
+                            }
+                            recovery.record(playerId, questId, field, value);
+                            break;
+                        default:
+                            throw new IOException("Unknown record type " + type + " in " + file.getName());
+                    }
+                } catch (EOFException e) {
+                    // Torn final record from a crash mid-write - everything before it is intact
+                    return;
+                }
+            }
+        }
+    }
+    
+    private static long getField(PlayerQuestState state, int field) {
+        switch (field) {
+            case 0: return state.getStatus().ordinal();
+            case 1: return state.getObjectiveIndex();
+            case 2: return state.getObjectiveProgress();
+            case 3: return state.getAcceptedTimestamp();
+            case 4: return state.getCompletedTimestamp();
+            default: return state.getTurnedInTimestamp();
+        }
+    }
+    
+    private static void setField(PlayerQuestState state, int field, long value) {
+        switch (field) {
+            case 0:
+                if (value >= 0 && value < STATUSES.length) {
+                    state.setStatus(STATUSES[(int) value]);
+                }
+                break;
+            case 1: state.setObjectiveIndex((int) value); break;
+            case 2: state.setObjectiveProgress((int) value); break;
+            case 3: state.setAcceptedTimestamp(value); break;
+            case 4: state.setCompletedTimestamp(value); break;
+            default: state.setTurnedInTimestamp(value); break;
+        }
+    }
+    
+    /**
+     * Latest journaled value of every field, per player and quest
+     */
+    public static class Recovery {
+        private final Map<UUID, Map<String, long[]>> values = new HashMap<>();
+        private final Map<UUID, Map<String, Integer>> masks = new HashMap<>();
+        
+        private void record(UUID playerId, String questId, int field, long value) {
+            values.computeIfAbsent(playerId, k -> new HashMap<>())
+                    .computeIfAbsent(questId, k -> new long[FIELD_COUNT])[field] = value;
+            masks.computeIfAbsent(playerId, k -> new HashMap<>())
+                    .merge(questId, 1 << field, (a, b) -> a | b);
+        }
+        
+        public boolean isEmpty() {
+            return values.isEmpty();
+        }
+        
+        public Set<UUID> getPlayerIds() {
+            return values.keySet();
+        }
+        
+        /**
+         * Apply the journaled fields of a player on top of their stored states
+         *
+         * @param playerId The player UUID
+         * @param states The player's stored states, updated in place
+         */
+        public void applyTo(UUID playerId, Map<String, PlayerQuestState> states) {
+            Map<String, long[]> playerValues = values.get(playerId);
+            if (playerValues == null) {
+                return;
+            }
+            
+            Map<String, Integer> playerMasks = masks.get(playerId);
+            for (Map.Entry<String, long[]> entry : playerValues.entrySet()) {
+                String questId = entry.getKey();
+                PlayerQuestState state = states.computeIfAbsent(questId, PlayerQuestState::new);
+                int mask = playerMasks.get(questId);
+                
+                for (int field = 0; field < FIELD_COUNT; field++) {
+                    if ((mask & (1 << field)) != 0) {
+                        setField(state, field, entry.getValue()[field]);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.aethor.aethorquests.storage;
+
+import com.aethor.aethorquests.AethorQuestsPlugin;
+import com.aethor.aethorquests.model.PlayerQuestState;
+import com.aethor.aethorquests.model.QuestStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Packs all players into a fixed set of region files, playerdata/regions/r.{n}.aqr,
+ * in the spirit of Minecraft's Anvil format.
+ *
+ * Each region starts with a memory-mapped header of UUID slots (open addressing on
+ * the UUID hash) holding the sector offset and byte length of the player's record.
+ * Records use the binary format and live in 512-byte sectors after the header, so a
+ * load is a header lookup plus one positioned read, and a save one positioned write.
+ * Saves never overwrite a live record: the new copy goes to free sectors and the
+ * header slot is switched over only after the data is synced.
+ * Players that still have a .dat or .yml file are imported in bulk when the storage opens,
+ * or earlier if they are loaded first.
+ */
+public class RegionPlayerStorage implements PlayerStorage {
+    
+    private static final int REGION_COUNT = 64;
+    private static final int SLOTS_PER_REGION = 8192;
+    
+    // Slot: UUID most significant bits, least significant bits, location (sector offset << 32 | length)
+    private static final int SLOT_BYTES = 24;
+    private static final int SECTOR_BYTES = 512;
+    private static final int HEADER_BYTES = SLOTS_PER_REGION * SLOT_BYTES;
+    private static final int HEADER_SECTORS = HEADER_BYTES / SECTOR_BYTES;
+    
+    private final AethorQuestsPlugin plugin;
+    private final File regionFolder;
+    private final LegacyPlayerFiles legacyFiles;
+    private final RegionFile[] regions = new RegionFile[REGION_COUNT];
+    
+    // Serializes imports, so a bulk import never overwrites a record saved after a join
+    private final Object migrateLock = new Object();
+    private boolean closed;
+    private volatile boolean legacyImported;
+    
+    public RegionPlayerStorage(AethorQuestsPlugin plugin, File playerDataFolder) {
+        this.plugin = plugin;
+        this.regionFolder = new File(playerDataFolder, "regions");
+        this.legacyFiles = new LegacyPlayerFiles(playerDataFolder);
+        
+        if (!regionFolder.exists()) {
+            regionFolder.mkdirs();
+        }
+    }
+    
+    @Override
+    public Map<String, PlayerQuestState> load(UUID playerId) throws IOException {
+        byte[] record = getRegion(playerId).read(playerId);
+        if (record == null) {
+            synchronized (migrateLock) {
+                record = getRegion(playerId).read(playerId);
+                if (record == null) {
+                    return migrate(playerId);
+                }
+            }
+        }
+        
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            return BinaryPlayerStorage.readStates(in);
+        }
+    }
+    
+    @Override
+    public void save(UUID playerId, Collection<PlayerQuestState> states) throws IOException {
+        saveBatch(Map.of(playerId, states));
+    }
+    
+    /**
+     * Group commit per region: all records of the region are written, synced once,
+     * and only then made visible in the header
+     */
+    @Override
+    public void saveBatch(Map<UUID, Collection<PlayerQuestState>> batch) throws IOException {
+        Map<RegionFile, Map<UUID, byte[]>> byRegion = new LinkedHashMap<>();
+        for (Map.Entry<UUID, Collection<PlayerQuestState>> entry : batch.entrySet()) {
+            byRegion.computeIfAbsent(getRegion(entry.getKey()), k -> new LinkedHashMap<>())
+                    .put(entry.getKey(), encode(entry.getValue()));
+        }
+        
+        for (Map.Entry<RegionFile, Map<UUID, byte[]>> entry : byRegion.entrySet()) {
+            entry.getKey().write(entry.getValue());
+        }
+    }
+    
+    @Override
+    public boolean supportsParallelWrites() {
+        // Each region file locks on its own
+        return true;
+    }
+    
+    /**
+     * Region files have no secondary index - this reads every stored player
+     */
+    @Override
+    public List<UUID> findPlayers(String questId, QuestStatus status) throws IOException {
+        List<UUID> players = new ArrayList<>();
+        
+        for (int i = 0; i < REGION_COUNT; i++) {
+            RegionFile region = getRegionIfExists(i);
+            if (region == null) {
+                continue;
+            }
+            
+            for (UUID playerId : region.getPlayerIds()) {
+                Map<String, PlayerQuestState> states = load(playerId);
+                PlayerQuestState state = states != null ? states.get(questId) : null;
+                if (state != null && state.getStatus() == status) {
+                    players.add(playerId);
+                }
+            }
+        }
+        return players;
+    }
+    
+    @Override
+    public void importLegacyData() {
+        int imported = 0;
+        for (UUID playerId : legacyFiles.listPlayerIds()) {
+            try {
+                if (!importPlayer(playerId)) {
+                    // Closed
+                    return;
+                }
+                imported++;
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to import player data for " + playerId, e);
+            }
+        }
+        
+        legacyImported = true;
+        if (imported > 0) {
+            plugin.getLogger().info("Imported player data of " + imported + " player(s) into region storage");
+        }
+    }
+    
+    @Override
+    public boolean isFindComplete() {
+        return legacyImported;
+    }
+    
+    /**
+     * Import one player unless their region already has them, e.g. because they joined meanwhile
+     *
+     * @return False if the storage is closed
+     */
+    private boolean importPlayer(UUID playerId) throws IOException {
+        synchronized (migrateLock) {
+            if (closed) {
+                return false;
+            }
+            
+            if (getRegion(playerId).read(playerId) == null) {
+                migrate(playerId);
+            } else {
+                // Already imported - the file is a leftover
+                legacyFiles.markMigrated(playerId);
+            }
+            return true;
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        synchronized (migrateLock) {
+            closed = true;
+            synchronized (this) {
+                for (int i = 0; i < REGION_COUNT; i++) {
+                    if (regions[i] != null) {
+                        regions[i].close();
+                        regions[i] = null;
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Imports a player's .dat (or legacy .yml) file into their region (hold migrateLock).
+     * The file is kept as .migrated rather than deleted.
+     */
+    private Map<String, PlayerQuestState> migrate(UUID playerId) throws IOException {
+        Map<String, PlayerQuestState> states = legacyFiles.read(playerId);
+        if (states == null) {
+            return null;
+        }
+        
+        save(playerId, states.values());
+        
+        String unrenamed = legacyFiles.markMigrated(playerId);
+        if (unrenamed != null) {
+            plugin.getLogger().warning("Migrated player data for " + playerId + " but could not rename " + unrenamed);
+        } else if (plugin.isDebug()) {
+            plugin.getLogger().info("Migrated player data for " + playerId + " to region storage");
+        }
+        
+        return states;
+    }
+    
+    private static byte[] encode(Collection<PlayerQuestState> states) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            BinaryPlayerStorage.writeStates(out, states);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Spreads the UUID bits; the low bits pick the region, the high bits the first slot to probe
+     */
+    private static long hash(UUID playerId) {
+        long h = playerId.getMostSignificantBits() ^ playerId.getLeastSignificantBits();
+        h *= 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+    
+    private RegionFile getRegion(UUID playerId) throws IOException {
+        int index = (int) (hash(playerId) & (REGION_COUNT - 1));
+        synchronized (this) {
+            if (regions[index] == null) {
+                regions[index] = new RegionFile(new File(regionFolder, "r." + index + ".aqr"));
+            }
+            return regions[index];
+        }
+    }
+    
+    private synchronized RegionFile getRegionIfExists(int index) throws IOException {
+        if (regions[index] == null) {
+            File file = new File(regionFolder, "r." + index + ".aqr");
+            if (!file.exists()) {
+                return null;
+            }
+            regions[index] = new RegionFile(file);
+        }
+        return regions[index];
+    }
+    
+    /**
+     * A single region file. All access is synchronized on the instance.
+     */
+    private static class RegionFile {
+        private final FileChannel channel;
+        private final MappedByteBuffer header;
+        
+        // Sectors in use by the header or a live record
+        private final BitSet usedSectors = new BitSet();
+        
+        private RegionFile(File file) throws IOException {
+            this.channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Mapping past the end grows the file to the full header size
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            
+            usedSectors.set(0, HEADER_SECTORS);
+            for (int slot = 0; slot < SLOTS_PER_REGION; slot++) {
+                long location = header.getLong(slot * SLOT_BYTES + 16);
+                if (location != 0) {
+                    usedSectors.set(sectorOffset(location), sectorOffset(location) + sectorCount(recordLength(location)));
+                }
+            }
+        }
+        
+        /**
+         * Read a player's record
+         *
+         * @return The record bytes, or null if the player is not stored in this region
+         */
+        private synchronized byte[] read(UUID playerId) throws IOException {
+            int slot = findSlot(playerId);
+            if (slot < 0) {
+                return null;
+            }
+            
+            long location = header.getLong(slot * SLOT_BYTES + 16);
+            if (location == 0) {
+                return null;
+            }
+            
+            ByteBuffer record = ByteBuffer.allocate(recordLength(location));
+            long position = (long) sectorOffset(location) * SECTOR_BYTES;
+            while (record.hasRemaining()) {
+                if (channel.read(record, position + record.position()) < 0) {
+                    throw new IOException("Truncated record for " + playerId);
+                }
+            }
+            return record.array();
+        }
+        
+        /**
+         * Write records to free sectors, sync them, then point the header slots at them
+         */
+        private synchronized void write(Map<UUID, byte[]> records) throws IOException {
+            Map<Integer, Long> newLocations = new HashMap<>();
+            List<Long> freedLocations = new ArrayList<>();
+            
+            try {
+                for (Map.Entry<UUID, byte[]> entry : records.entrySet()) {
+                    int slot = findSlot(entry.getKey());
+                    if (slot < 0) {
+                        throw new IOException("Region is full, cannot store " + entry.getKey());
+                    }
+                    
+                    byte[] record = entry.getValue();
+                    int sectors = sectorCount(record.length);
+                    int offset = allocate(sectors);
+                    
+                    ByteBuffer buffer = ByteBuffer.wrap(record);
+                    long position = (long) offset * SECTOR_BYTES;
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer, position + buffer.position());
+                    }
+                    
+                    newLocations.put(slot, ((long) offset << 32) | record.length);
+                    
+                    // Claim the slot now so later players in the batch probe past it
+                    header.putLong(slot * SLOT_BYTES, entry.getKey().getMostSignificantBits());
+                    header.putLong(slot * SLOT_BYTES + 8, entry.getKey().getLeastSignificantBits());
+                }
+            } catch (IOException e) {
+                // Nothing points at the new sectors yet
+                for (long location : newLocations.values()) {
+                    free(location);
+                }
+                throw e;
+            }
+            
+            channel.force(false);
+            
+            for (Map.Entry<Integer, Long> entry : newLocations.entrySet()) {
+                int locationIndex = entry.getKey() * SLOT_BYTES + 16;
+                long oldLocation = header.getLong(locationIndex);
+                if (oldLocation != 0) {
+                    freedLocations.add(oldLocation);
+                }
+                header.putLong(locationIndex, entry.getValue());
+            }
+            header.force();
+            
+            // Only reusable once the header no longer points at them
+            for (long location : freedLocations) {
+                free(location);
+            }
+        }
+        
+        /**
+         * Get the IDs of all players stored in this region
+         */
+        private synchronized List<UUID> getPlayerIds() {
+            List<UUID> playerIds = new ArrayList<>();
+            for (int slot = 0; slot < SLOTS_PER_REGION; slot++) {
+                if (header.getLong(slot * SLOT_BYTES + 16) != 0) {
+                    playerIds.add(new UUID(header.getLong(slot * SLOT_BYTES), header.getLong(slot * SLOT_BYTES + 8)));
+                }
+            }
+            return playerIds;
+        }
+        
+        private synchronized void close() throws IOException {
+            header.force();
+            channel.close();
+        }
+        
+        /**
+         * Linear probing from the UUID hash
+         *
+         * @return The player's slot, the free slot they would take, or -1 if the region is full
+         */
+        private int findSlot(UUID playerId) {
+            long msb = playerId.getMostSignificantBits();
+            long lsb = playerId.getLeastSignificantBits();
+            int start = (int) (hash(playerId) >>> 40) & (SLOTS_PER_REGION - 1);
+            
+            for (int i = 0; i < SLOTS_PER_REGION; i++) {
+                int slot = (start + i) & (SLOTS_PER_REGION - 1);
+                long slotMsb = header.getLong(slot * SLOT_BYTES);
+                long slotLsb = header.getLong(slot * SLOT_BYTES + 8);
+                
+                if (slotMsb == msb && slotLsb == lsb) {
+                    return slot;
+                }
+                if (slotMsb == 0 && slotLsb == 0) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+        
+        /**
+         * First-fit run of free sectors
+         */
+        private int allocate(int sectors) {
+            int offset = usedSectors.nextClearBit(HEADER_SECTORS);
+            while (true) {
+                int used = usedSectors.nextSetBit(offset);
+                if (used < 0 || used - offset >= sectors) {
+                    break;
+                }
+                offset = usedSectors.nextClearBit(used);
+            }
+            
+            usedSectors.set(offset, offset + sectors);
+            return offset;
+        }
+        
+        private void free(long location) {
+            usedSectors.clear(sectorOffset(location), sectorOffset(location) + sectorCount(recordLength(location)));
+        }
+        
+        private static int sectorOffset(long location) {
+            return (int) (location >>> 32);
+        }
+        
+        private static int recordLength(long location) {
+            return (int) location;
+        }
+        
+        private static int sectorCount(int length) {
+            return (length + SECTOR_BYTES - 1) / SECTOR_BYTES;
+        }
+    }
+}
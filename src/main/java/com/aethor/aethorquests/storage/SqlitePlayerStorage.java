@@ -0,0 +1,260 @@
+package com.aethor.aethorquests.storage;
+
+import com.aethor.aethorquests.AethorQuestsPlugin;
+import com.aethor.aethorquests.model.PlayerQuestState;
+import com.aethor.aethorquests.model.QuestStatus;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Stores all players' quest states in an embedded SQLite database, playerdata/players.db.
+ *
+ * One row per (player, quest). Saves are batched upserts inside a single
+ * transaction, and the (quest_id, status) index answers "who has quest X in
+ * status Y" without touching every player. The SQLite driver ships with Paper.
+ * Players that still have a .dat or .yml file are imported in bulk when the storage opens,
+ * or earlier if they are loaded first.
+ */
+public class SqlitePlayerStorage implements PlayerStorage {
+    
+    private static final String SELECT_PLAYER =
+            "SELECT quest_id, status, objective_index, objective_progress, accepted_at, completed_at, turned_in_at "
+            + "FROM quest_states WHERE player_uuid = ?";
+    
+    private static final String UPSERT_STATE =
+            "INSERT INTO quest_states (player_uuid, quest_id, status, objective_index, objective_progress, accepted_at, completed_at, turned_in_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (player_uuid, quest_id) DO UPDATE SET "
+            + "status = excluded.status, objective_index = excluded.objective_index, "
+            + "objective_progress = excluded.objective_progress, accepted_at = excluded.accepted_at, "
+            + "completed_at = excluded.completed_at, turned_in_at = excluded.turned_in_at";
+    
+    private static final String SELECT_BY_QUEST_STATUS =
+            "SELECT player_uuid FROM quest_states WHERE quest_id = ? AND status = ?";
+    
+    private final AethorQuestsPlugin plugin;
+    private final LegacyPlayerFiles legacyFiles;
+    private final Connection connection;
+    
+    private boolean closed;
+    private volatile boolean legacyImported;
+    
+    public SqlitePlayerStorage(AethorQuestsPlugin plugin, File playerDataFolder) throws IOException {
+        this.plugin = plugin;
+        this.legacyFiles = new LegacyPlayerFiles(playerDataFolder);
+        
+        File databaseFile = new File(playerDataFolder, "players.db");
+        try {
+            Class.forName("org.sqlite.JDBC");
+            this.connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+            createSchema();
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IOException("Failed to open " + databaseFile.getName(), e);
+        }
+    }
+    
+    private void createSchema() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // WAL lets the writer commit without blocking readers; NORMAL only syncs at checkpoints
+            statement.execute("PRAGMA journal_mode = WAL");
+            statement.execute("PRAGMA synchronous = NORMAL");
+            
+            statement.execute("CREATE TABLE IF NOT EXISTS quest_states ("
+                    + "player_uuid TEXT NOT NULL, "
+                    + "quest_id TEXT NOT NULL, "
+                    + "status TEXT NOT NULL, "
+                    + "objective_index INTEGER NOT NULL, "
+                    + "objective_progress INTEGER NOT NULL, "
+                    + "accepted_at INTEGER NOT NULL, "
+                    + "completed_at INTEGER NOT NULL, "
+                    + "turned_in_at INTEGER NOT NULL, "
+                    + "PRIMARY KEY (player_uuid, quest_id))");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_quest_states_quest_status ON quest_states (quest_id, status)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_quest_states_status ON quest_states (status)");
+        }
+    }
+    
+    @Override
+    public synchronized Map<String, PlayerQuestState> load(UUID playerId) throws IOException {
+        Map<String, PlayerQuestState> questStates = loadRows(playerId);
+        return questStates.isEmpty() ? migrate(playerId) : questStates;
+    }
+    
+    private Map<String, PlayerQuestState> loadRows(UUID playerId) throws IOException {
+        Map<String, PlayerQuestState> questStates = new ConcurrentHashMap<>();
+        
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_PLAYER)) {
+            statement.setString(1, playerId.toString());
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    PlayerQuestState state = new PlayerQuestState(rows.getString(1));
+                    state.setStatus(QuestStatus.valueOf(rows.getString(2)));
+                    state.setObjectiveIndex(rows.getInt(3));
+                    state.setObjectiveProgress(rows.getInt(4));
+                    state.setAcceptedTimestamp(rows.getLong(5));
+                    state.setCompletedTimestamp(rows.getLong(6));
+                    state.setTurnedInTimestamp(rows.getLong(7));
+                    
+                    questStates.put(state.getQuestId(), state);
+                }
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new IOException("Failed to load player data for " + playerId, e);
+        }
+        return questStates;
+    }
+    
+    @Override
+    public void save(UUID playerId, Collection<PlayerQuestState> states) throws IOException {
+        saveBatch(Map.of(playerId, states));
+    }
+    
+    /**
+     * Writes the whole batch as one transaction of upserts.
+     * Quest states are never removed from a player, so rows are never deleted.
+     */
+    @Override
+    public synchronized void saveBatch(Map<UUID, Collection<PlayerQuestState>> batch) throws IOException {
+        try {
+            connection.setAutoCommit(false);
+            
+            try (PreparedStatement upsert = connection.prepareStatement(UPSERT_STATE)) {
+                for (Map.Entry<UUID, Collection<PlayerQuestState>> entry : batch.entrySet()) {
+                    String playerId = entry.getKey().toString();
+                    
+                    for (PlayerQuestState state : entry.getValue()) {
+                        upsert.setString(1, playerId);
+                        upsert.setString(2, state.getQuestId());
+                        upsert.setString(3, state.getStatus().name());
+                        upsert.setInt(4, state.getObjectiveIndex());
+                        upsert.setInt(5, state.getObjectiveProgress());
+                        upsert.setLong(6, state.getAcceptedTimestamp());
+                        upsert.setLong(7, state.getCompletedTimestamp());
+                        upsert.setLong(8, state.getTurnedInTimestamp());
+                        upsert.addBatch();
+                    }
+                }
+                
+                upsert.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to save player data for " + batch.size() + " player(s)", e);
+        }
+    }
+    
+    @Override
+    public synchronized List<UUID> findPlayers(String questId, QuestStatus status) throws IOException {
+        List<UUID> players = new ArrayList<>();
+        
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_BY_QUEST_STATUS)) {
+            statement.setString(1, questId);
+            statement.setString(2, status.name());
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    players.add(UUID.fromString(rows.getString(1)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to query players for quest " + questId, e);
+        }
+        
+        return players;
+    }
+    
+    @Override
+    public void importLegacyData() {
+        int imported = 0;
+        for (UUID playerId : legacyFiles.listPlayerIds()) {
+            try {
+                if (!importPlayer(playerId)) {
+                    // Closed
+                    return;
+                }
+                imported++;
+            } catch (IOException e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to import player data for " + playerId, e);
+            }
+        }
+        
+        legacyImported = true;
+        if (imported > 0) {
+            plugin.getLogger().info("Imported player data of " + imported + " player(s) into the database");
+        }
+    }
+    
+    @Override
+    public boolean isFindComplete() {
+        return legacyImported;
+    }
+    
+    /**
+     * Import one player unless the database already has them, e.g. because they joined meanwhile
+     *
+     * @return False if the storage is closed
+     */
+    private synchronized boolean importPlayer(UUID playerId) throws IOException {
+        if (closed) {
+            return false;
+        }
+        
+        if (loadRows(playerId).isEmpty()) {
+            migrate(playerId);
+        } else {
+            // Already imported - the file is a leftover that would shadow nothing
+            legacyFiles.markMigrated(playerId);
+        }
+        return true;
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException("Failed to close the player database", e);
+        }
+    }
+    
+    /**
+     * Imports a player's .dat (or legacy .yml) file into the database.
+     * The file is kept as .migrated rather than deleted.
+     */
+    private Map<String, PlayerQuestState> migrate(UUID playerId) throws IOException {
+        Map<String, PlayerQuestState> states = legacyFiles.read(playerId);
+        if (states == null) {
+            return null;
+        }
+        
+        save(playerId, states.values());
+        
+        String unrenamed = legacyFiles.markMigrated(playerId);
+        if (unrenamed != null) {
+            plugin.getLogger().warning("Migrated player data for " + playerId + " but could not rename " + unrenamed);
+        } else if (plugin.isDebug()) {
+            plugin.getLogger().info("Migrated player data for " + playerId + " to the database");
+        }
+        
+        return states;
+    }
+}
@@ -0,0 +1,77 @@
+package com.aethor.aethorquests.storage;
+
+import com.aethor.aethorquests.model.PlayerQuestState;
+import com.aethor.aethorquests.model.QuestStatus;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores each player's quest states in playerdata/{uuid}.yml
+ */
+public class YamlPlayerStorage extends FilePlayerStorage {
+    
+    public YamlPlayerStorage(File playerDataFolder) {
+        super(playerDataFolder);
+    }
+    
+    @Override
+    public Map<String, PlayerQuestState> load(UUID playerId) throws IOException {
+        File playerFile = getPlayerFile(playerId);
+        if (!playerFile.exists()) {
+            return null;
+        }
+        
+        FileConfiguration config = YamlConfiguration.loadConfiguration(playerFile);
+        Map<String, PlayerQuestState> questStates = new ConcurrentHashMap<>();
+        
+        ConfigurationSection questsSection = config.getConfigurationSection("quests");
+        if (questsSection != null) {
+            for (String questId : questsSection.getKeys(false)) {
+                ConfigurationSection questSection = questsSection.getConfigurationSection(questId);
+                if (questSection == null) continue;
+                
+                PlayerQuestState state = new PlayerQuestState(questId);
+                state.setStatus(QuestStatus.valueOf(questSection.getString("status", "NOT_STARTED")));
+                state.setObjectiveIndex(questSection.getInt("objectiveIndex", 0));
+                state.setObjectiveProgress(questSection.getInt("objectiveProgress", 0));
+                state.setAcceptedTimestamp(questSection.getLong("acceptedTimestamp", 0));
+                state.setCompletedTimestamp(questSection.getLong("completedTimestamp", 0));
+                state.setTurnedInTimestamp(questSection.getLong("turnedInTimestamp", 0));
+                
+                questStates.put(questId, state);
+            }
+        }
+        
+        return questStates;
+    }
+    
+    @Override
+    protected void write(File file, Collection<PlayerQuestState> states) throws IOException {
+        FileConfiguration config = new YamlConfiguration();
+        
+        for (PlayerQuestState state : states) {
+            String path = "quests." + state.getQuestId();
+            config.set(path + ".status", state.getStatus().name());
+            config.set(path + ".objectiveIndex", state.getObjectiveIndex());
+            config.set(path + ".objectiveProgress", state.getObjectiveProgress());
+            config.set(path + ".acceptedTimestamp", state.getAcceptedTimestamp());
+            config.set(path + ".completedTimestamp", state.getCompletedTimestamp());
+            config.set(path + ".turnedInTimestamp", state.getTurnedInTimestamp());
+        }
+        
+        config.save(file);
+    }
+    
+    @Override
+    protected String getFileExtension() {
+        return ".yml";
+    }
+}
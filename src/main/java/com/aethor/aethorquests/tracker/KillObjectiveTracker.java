@@ -2,13 +2,19 @@ package com.aethor.aethorquests.tracker;
 
 import com.aethor.aethorquests.AethorQuestsPlugin;
 import com.aethor.aethorquests.model.*;
+import com.destroystokyo.paper.event.server.ServerTickEndEvent;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -16,9 +22,14 @@ import java.util.UUID;
  */
 public class KillObjectiveTracker implements Listener {
     private final AethorQuestsPlugin plugin;
+    private final KillSubscriptionIndex subscriptions;
+    
+    // Kills buffered during the current tick: player -> quest ID -> pending kills
+    private final Map<UUID, Map<String, PendingKills>> pendingKills = new HashMap<>();
     
     public KillObjectiveTracker(AethorQuestsPlugin plugin) {
         this.plugin = plugin;
+        this.subscriptions = new KillSubscriptionIndex(plugin);
     }
     
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -26,13 +37,96 @@ public class KillObjectiveTracker implements Listener {
         Player killer = event.getEntity().getKiller();
         if (killer == null) return;
         
+        // Nobody is hunting this mob - the common case for mob farms
+        boolean vanillaSubscribed = subscriptions.hasSubscribers(event.getEntityType());
+        if (!vanillaSubscribed && !subscriptions.hasMythicSubscribers()) {
+            return;
+        }
+        
         UUID playerId = killer.getUniqueId();
         
-        // Check all active quests for this player
-        List<PlayerQuestState> activeQuests = plugin.getPlayerDataStore().getActiveQuests(playerId);
+        // Collect the quests this player is hunting the mob for
+        List<String> questIds = new ArrayList<>();
+        if (vanillaSubscribed) {
+            questIds.addAll(subscriptions.getSubscribedQuests(event.getEntityType(), playerId));
+        }
+        if (subscriptions.hasMythicSubscribers()) {
+            // TODO: Integrate with MythicMobs API when available
+            String mythicType = getMythicMobType(event.getEntity());
+            if (mythicType != null) {
+                questIds.addAll(subscriptions.getSubscribedQuests(mythicType, playerId));
+            }
+        }
+        
+        // Buffer the kills - they are applied once at the end of this tick, so a sweep
+        // or AoE kill of many mobs costs one update and one notification per quest
+        for (String questId : questIds) {
+            PlayerQuestState state = plugin.getPlayerDataStore().getQuestState(playerId, questId);
+            if (state == null || state.getStatus() != QuestStatus.ACTIVE) continue;
+            
+            Map<String, PendingKills> playerPending = pendingKills.computeIfAbsent(playerId, k -> new LinkedHashMap<>());
+            PendingKills pending = playerPending.get(questId);
+            if (pending == null || pending.objectiveIndex != state.getObjectiveIndex()) {
+                pending = new PendingKills(state.getObjectiveIndex());
+                playerPending.put(questId, pending);
+            }
+            pending.kills++;
+        }
+    }
+    
+    /**
+     * Apply the kills buffered during this tick once the tick has finished
+     */
+    @EventHandler
+    public void onServerTickEnd(ServerTickEndEvent event) {
+        flushPendingKills();
+    }
+    
+    /**
+     * Apply pending kills before the player's data is saved and unloaded
+     */
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        Map<String, PendingKills> playerPending = pendingKills.remove(event.getPlayer().getUniqueId());
+        if (playerPending != null) {
+            applyPendingKills(event.getPlayer(), playerPending);
+        }
+    }
+    
+    /**
+     * Apply all buffered kill progress
+     */
+    public void flushPendingKills() {
+        if (pendingKills.isEmpty()) {
+            return;
+        }
+        
+        for (Map.Entry<UUID, Map<String, PendingKills>> entry : pendingKills.entrySet()) {
+            Player player = plugin.getServer().getPlayer(entry.getKey());
+            if (player != null) {
+                applyPendingKills(player, entry.getValue());
+            }
+        }
+        pendingKills.clear();
+    }
+    
+    /**
+     * Apply a player's buffered kills, one progress update per quest
+     */
+    private void applyPendingKills(Player player, Map<String, PendingKills> playerPending) {
+        UUID playerId = player.getUniqueId();
         
-        for (PlayerQuestState state : activeQuests) {
-            QuestDefinition quest = plugin.getQuestManager().getQuest(state.getQuestId());
+        for (Map.Entry<String, PendingKills> entry : playerPending.entrySet()) {
+            String questId = entry.getKey();
+            PendingKills pending = entry.getValue();
+            
+            PlayerQuestState state = plugin.getPlayerDataStore().getQuestState(playerId, questId);
+            if (state == null || state.getStatus() != QuestStatus.ACTIVE) continue;
+            
+            // Objective changed since the kills were counted (e.g. admin command)
+            if (state.getObjectiveIndex() != pending.objectiveIndex) continue;
+            
+            QuestDefinition quest = plugin.getQuestManager().getQuest(questId);
             if (quest == null) continue;
             
             Objective currentObjective = quest.getCurrentObjective(state.getObjectiveIndex());
@@ -40,44 +134,35 @@ public class KillObjectiveTracker implements Listener {
                 continue;
             }
             
-            // Check if the killed entity matches the objective
-            boolean matches = false;
+            int required = currentObjective.getKillAmount();
+            int current = state.getObjectiveProgress() + pending.kills;
             
-            if (currentObjective.isMythicMob()) {
-                // Check for MythicMobs (via entity metadata/tags)
-                // TODO: Integrate with MythicMobs API when available
-                String mythicType = getMythicMobType(event.getEntity());
-                if (mythicType != null && mythicType.equals(currentObjective.getMythicMobName())) {
-                    matches = true;
-                }
-            } else {
-                // Check vanilla entity type
-                if (event.getEntityType() == currentObjective.getEntityType()) {
-                    matches = true;
-                }
+            // Surplus kills from the same tick don't spill over into the next objective
+            if (current > required) {
+                current = Math.max(required, state.getObjectiveProgress());
             }
+            state.setObjectiveProgress(current);
+            
+            // Notify player
+            plugin.getQuestUI().notifyProgress(player, quest, currentObjective, current, required);
             
-            if (matches) {
-                // Increment progress
-                state.incrementProgress(1);
-                
-                int required = currentObjective.getKillAmount();
-                int current = state.getObjectiveProgress();
-                
-                // Notify player
-                plugin.getQuestUI().notifyProgress(killer, quest, currentObjective, current, required);
-                
-                // Check if objective is complete
-                if (current >= required) {
-                    completeObjective(killer, quest, state);
-                }
-                
-                // Auto-save progress
-                plugin.getPlayerDataStore().setQuestState(playerId, state);
+            // Check if objective is complete
+            if (current >= required) {
+                completeObjective(player, quest, state);
             }
+            
+            // Auto-save progress
+            plugin.getPlayerDataStore().setQuestState(playerId, state);
         }
     }
     
+    /**
+     * Get the index of players currently on a KILL objective
+     */
+    public KillSubscriptionIndex getSubscriptions() {
+        return subscriptions;
+    }
+    
     /**
      * Get MythicMob type from entity (if MythicMobs is installed)
      */
@@ -120,4 +205,16 @@ public class KillObjectiveTracker implements Listener {
             plugin.getQuestUI().notifyNextObjective(player, quest, nextObjective);
         }
     }
+    
+    /**
+     * Kills counted for a quest during the current tick
+     */
+    private static class PendingKills {
+        private final int objectiveIndex;
+        private int kills;
+        
+        private PendingKills(int objectiveIndex) {
+            this.objectiveIndex = objectiveIndex;
+        }
+    }
 }
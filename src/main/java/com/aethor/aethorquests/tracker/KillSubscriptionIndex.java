@@ -0,0 +1,197 @@
+package com.aethor.aethorquests.tracker;
+
+import com.aethor.aethorquests.AethorQuestsPlugin;
+import com.aethor.aethorquests.model.*;
+import org.bukkit.entity.EntityType;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the (player, quest) pairs whose current objective is a KILL objective,
+ * keyed by the entity type or MythicMob name being hunted.
+ * Kept in sync with quest progress so a death nobody is hunting costs a single map lookup.
+ */
+public class KillSubscriptionIndex {
+    private final AethorQuestsPlugin plugin;
+    
+    // EntityType -> player -> quest IDs currently on a KILL objective for that type
+    private final Map<EntityType, Map<UUID, Set<String>>> byEntityType = new ConcurrentHashMap<>();
+    
+    // MythicMob name -> player -> quest IDs currently on a KILL objective for that mob
+    private final Map<String, Map<UUID, Set<String>>> byMythicMob = new ConcurrentHashMap<>();
+    
+    // Player -> quest ID -> target the quest is subscribed under (EntityType or MythicMob name)
+    private final Map<UUID, Map<String, Object>> subscriptions = new ConcurrentHashMap<>();
+    
+    public KillSubscriptionIndex(AethorQuestsPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Re-evaluates the subscription of a single quest state.
+     * Must be called whenever the state's status or objective index may have changed.
+     */
+    public void update(UUID playerId, PlayerQuestState state) {
+        String questId = state.getQuestId();
+        Object target = getKillTarget(state);
+        
+        Map<String, Object> playerSubs = subscriptions.get(playerId);
+        Object current = playerSubs != null ? playerSubs.get(questId) : null;
+        
+        if (target == null ? current == null : target.equals(current)) {
+            return;
+        }
+        
+        if (current != null) {
+            unsubscribe(playerId, questId, current);
+            playerSubs.remove(questId);
+        }
+        
+        if (target != null) {
+            subscribe(playerId, questId, target);
+            subscriptions.computeIfAbsent(playerId, k -> new ConcurrentHashMap<>()).put(questId, target);
+        }
+    }
+    
+    /**
+     * Subscribes all quests of a freshly loaded player
+     */
+    public void addPlayer(UUID playerId, QuestStateTable states) {
+        // Only active quests can be on an objective
+        for (int ordinal = states.nextActive(0); ordinal >= 0; ordinal = states.nextActive(ordinal + 1)) {
+            update(playerId, states.get(ordinal));
+        }
+    }
+    
+    /**
+     * Drops every subscription of a player
+     */
+    public void removePlayer(UUID playerId) {
+        Map<String, Object> playerSubs = subscriptions.remove(playerId);
+        if (playerSubs == null) {
+            return;
+        }
+        
+        for (Map.Entry<String, Object> entry : playerSubs.entrySet()) {
+            unsubscribe(playerId, entry.getKey(), entry.getValue());
+        }
+    }
+    
+    /**
+     * Rebuilds the index from all loaded players, e.g. after quest definitions changed
+     */
+    public void rebuild() {
+        byEntityType.clear();
+        byMythicMob.clear();
+        subscriptions.clear();
+        
+        for (UUID playerId : plugin.getPlayerDataStore().getLoadedPlayerIds()) {
+            QuestStateTable states = plugin.getPlayerDataStore().getQuestStates(playerId);
+            if (states != null) {
+                addPlayer(playerId, states);
+            }
+        }
+    }
+    
+    /**
+     * Get the quests a player is hunting the given entity type for
+     */
+    public Set<String> getSubscribedQuests(EntityType entityType, UUID playerId) {
+        Map<UUID, Set<String>> players = byEntityType.get(entityType);
+        if (players == null) {
+            return Collections.emptySet();
+        }
+        return players.getOrDefault(playerId, Collections.emptySet());
+    }
+    
+    /**
+     * Get the quests a player is hunting the given MythicMob for
+     */
+    public Set<String> getSubscribedQuests(String mythicMobName, UUID playerId) {
+        Map<UUID, Set<String>> players = byMythicMob.get(mythicMobName);
+        if (players == null) {
+            return Collections.emptySet();
+        }
+        return players.getOrDefault(playerId, Collections.emptySet());
+    }
+    
+    /**
+     * Check if anyone is hunting the given entity type
+     */
+    public boolean hasSubscribers(EntityType entityType) {
+        return byEntityType.containsKey(entityType);
+    }
+    
+    /**
+     * Check if anyone is hunting a MythicMob at all
+     */
+    public boolean hasMythicSubscribers() {
+        return !byMythicMob.isEmpty();
+    }
+    
+    /**
+     * Resolve what a quest state is currently hunting, or null if it is not on a KILL objective
+     */
+    private Object getKillTarget(PlayerQuestState state) {
+        if (state.getStatus() != QuestStatus.ACTIVE) {
+            return null;
+        }
+        
+        QuestDefinition quest = plugin.getQuestManager().getQuest(state.getQuestId());
+        if (quest == null) {
+            return null;
+        }
+        
+        Objective objective = quest.getCurrentObjective(state.getObjectiveIndex());
+        if (objective == null || objective.getType() != ObjectiveType.KILL) {
+            return null;
+        }
+        
+        if (objective.isMythicMob()) {
+            return objective.getMythicMobName();
+        }
+        return objective.getEntityType();
+    }
+    
+    private void subscribe(UUID playerId, String questId, Object target) {
+        if (target instanceof EntityType) {
+            subscribe(byEntityType, (EntityType) target, playerId, questId);
+        } else {
+            subscribe(byMythicMob, (String) target, playerId, questId);
+        }
+    }
+    
+    private void unsubscribe(UUID playerId, String questId, Object target) {
+        if (target instanceof EntityType) {
+            unsubscribe(byEntityType, (EntityType) target, playerId, questId);
+        } else {
+            unsubscribe(byMythicMob, (String) target, playerId, questId);
+        }
+    }
+    
+    // Both helpers go through compute so empty buckets are dropped atomically
+    // (player data is loaded off the main thread)
+    private static <K> void subscribe(Map<K, Map<UUID, Set<String>>> index, K target, UUID playerId, String questId) {
+        index.compute(target, (k, players) -> {
+            if (players == null) {
+                players = new ConcurrentHashMap<>();
+            }
+            players.computeIfAbsent(playerId, p -> ConcurrentHashMap.newKeySet()).add(questId);
+            return players;
+        });
+    }
+    
+    private static <K> void unsubscribe(Map<K, Map<UUID, Set<String>>> index, K target, UUID playerId, String questId) {
+        index.computeIfPresent(target, (k, players) -> {
+            players.computeIfPresent(playerId, (p, questIds) -> {
+                questIds.remove(questId);
+                return questIds.isEmpty() ? null : questIds;
+            });
+            return players.isEmpty() ? null : players;
+        });
+    }
+}
@@ -1,6 +1,5 @@
 package com.aethor.aethorquests.tracker;
 
-import java.util.List;
 import java.util.UUID;
 
 import org.bukkit.entity.Player;
@@ -10,6 +9,8 @@ import com.aethor.aethorquests.model.Objective;
 import com.aethor.aethorquests.model.ObjectiveType;
 import com.aethor.aethorquests.model.PlayerQuestState;
 import com.aethor.aethorquests.model.QuestDefinition;
+import com.aethor.aethorquests.model.QuestOrdinals;
+import com.aethor.aethorquests.model.QuestStateTable;
 import com.aethor.aethorquests.model.QuestStatus;
 
 /**
@@ -28,14 +29,17 @@ public class TalkObjectiveTracker {
     public void checkTalkObjective(Player player, String npcId) {
         UUID playerId = player.getUniqueId();
         
-        // Check all active quests for this player
-        List<PlayerQuestState> activeQuests = plugin.getPlayerDataStore().getActiveQuests(playerId);
+        QuestStateTable states = plugin.getPlayerDataStore().getQuestStates(playerId);
+        if (states == null) {
+            return;
+        }
         
-        for (PlayerQuestState state : activeQuests) {
-            QuestDefinition quest = plugin.getQuestManager().getQuest(state.getQuestId());
+        // Check all active quests for this player, walking the active bits without building a list
+        for (int ordinal = states.nextActive(0); ordinal >= 0; ordinal = states.nextActive(ordinal + 1)) {
+            QuestDefinition quest = plugin.getQuestManager().getQuest(QuestOrdinals.getQuestId(ordinal));
             if (quest == null) continue;
             
-            Objective currentObjective = quest.getCurrentObjective(state.getObjectiveIndex());
+            Objective currentObjective = quest.getCurrentObjective(states.getObjectiveIndex(ordinal));
             if (currentObjective == null || currentObjective.getType() != ObjectiveType.TALK) {
                 continue;
             }
@@ -43,6 +47,7 @@ public class TalkObjectiveTracker {
             // Check if the NPC matches the objective
             if (npcId.equals(currentObjective.getTalkNpcId())) {
                 // Complete this objective immediately
+                PlayerQuestState state = states.get(ordinal);
                 completeObjective(player, quest, state);
                 
                 // Save progress
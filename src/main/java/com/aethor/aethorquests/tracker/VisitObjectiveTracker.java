@@ -4,73 +4,205 @@ import com.aethor.aethorquests.AethorQuestsPlugin;
 import com.aethor.aethorquests.model.*;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.scheduler.BukkitRunnable;
 
-import java.util.List;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Tracks VISIT objectives using a periodic task
+ * Tracks VISIT objectives, either by polling registered players periodically
+ * or by evaluating their block-crossing moves (visitCheck.mode)
  */
-public class VisitObjectiveTracker extends BukkitRunnable {
+public class VisitObjectiveTracker extends BukkitRunnable implements Listener {
     private final AethorQuestsPlugin plugin;
+    private final Location scratchLocation = new Location(null, 0, 0, 0);
+    private boolean eventMode;
+    
+    // Compiled VISIT targets, swapped when quests change
+    private volatile VisitTargetGrid grid = VisitTargetGrid.EMPTY;
+    
+    // Player -> quest IDs currently on a VISIT objective; nobody else is ever checked
+    private final Map<UUID, Set<String>> visitingPlayers = new ConcurrentHashMap<>();
+    
+    // Players to check where they stand, because a VISIT objective just became current (event mode)
+    private final Set<UUID> pendingChecks = ConcurrentHashMap.newKeySet();
     
     public VisitObjectiveTracker(AethorQuestsPlugin plugin) {
         this.plugin = plugin;
+        rebuildGrid();
     }
     
     @Override
     public void run() {
-        // Check all online players with active quests
-        for (Player player : plugin.getServer().getOnlinePlayers()) {
-            checkPlayerVisitObjectives(player);
+        VisitTargetGrid grid = this.grid;
+        if (grid.isEmpty()) return;
+        
+        // Check registered players against the targets near them
+        for (UUID playerId : visitingPlayers.keySet()) {
+            Player player = plugin.getServer().getPlayer(playerId);
+            if (player == null) continue;
+            
+            // Reuse a single location instance - this runs for every player on every check
+            player.getLocation(scratchLocation);
+            checkPlayerVisitObjectives(player, scratchLocation, grid);
         }
     }
     
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(PlayerMoveEvent event) {
+        // Only block-crossing moves can enter a target
+        if (!event.hasChangedBlock()) return;
+        if (!visitingPlayers.containsKey(event.getPlayer().getUniqueId())) return;
+        
+        checkPlayerVisitObjectives(event.getPlayer(), event.getTo(), grid);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        if (!visitingPlayers.containsKey(event.getPlayer().getUniqueId())) return;
+        
+        checkPlayerVisitObjectives(event.getPlayer(), event.getTo(), grid);
+    }
+    
     /**
-     * Check if a player has reached any visit objectives
+     * Recompile the VISIT target grid from the loaded quests
      */
-    private void checkPlayerVisitObjectives(Player player) {
-        UUID playerId = player.getUniqueId();
-        List<PlayerQuestState> activeQuests = plugin.getPlayerDataStore().getActiveQuests(playerId);
+    public void rebuildGrid() {
+        grid = VisitTargetGrid.compile(plugin.getQuestManager().getAllQuests());
         
-        for (PlayerQuestState state : activeQuests) {
-            QuestDefinition quest = plugin.getQuestManager().getQuest(state.getQuestId());
-            if (quest == null) continue;
-            
-            Objective currentObjective = quest.getCurrentObjective(state.getObjectiveIndex());
-            if (currentObjective == null || currentObjective.getType() != ObjectiveType.VISIT) {
-                continue;
+        // Objectives may have changed - re-register all loaded players
+        visitingPlayers.clear();
+        for (UUID playerId : plugin.getPlayerDataStore().getLoadedPlayerIds()) {
+            QuestStateTable states = plugin.getPlayerDataStore().getQuestStates(playerId);
+            if (states != null) {
+                addPlayer(playerId, states);
             }
-            
-            // Check if player is at the location
-            if (isAtLocation(player, currentObjective)) {
-                // Complete this objective
-                completeObjective(player, quest, state);
-                
-                // Save progress
-                plugin.getPlayerDataStore().setQuestState(playerId, state);
+        }
+    }
+    
+    /**
+     * Registers or unregisters a quest depending on whether it is on a VISIT objective.
+     * Must be called whenever the state's status or objective index may have changed.
+     */
+    public void update(UUID playerId, PlayerQuestState state) {
+        if (isOnVisitObjective(state)) {
+            if (visitingPlayers.computeIfAbsent(playerId, k -> ConcurrentHashMap.newKeySet()).add(state.getQuestId())) {
+                scheduleCheck(playerId);
             }
+        } else {
+            visitingPlayers.computeIfPresent(playerId, (k, questIds) -> {
+                questIds.remove(state.getQuestId());
+                return questIds.isEmpty() ? null : questIds;
+            });
         }
     }
     
     /**
-     * Check if player is within range of the objective location
+     * Registers all VISIT objectives of a freshly loaded player
      */
-    private boolean isAtLocation(Player player, Objective objective) {
-        Location targetLocation = objective.getVisitLocation(plugin.getServer());
-        if (targetLocation == null) return false;
+    public void addPlayer(UUID playerId, QuestStateTable states) {
+        // Only active quests can be on an objective
+        for (int ordinal = states.nextActive(0); ordinal >= 0; ordinal = states.nextActive(ordinal + 1)) {
+            update(playerId, states.get(ordinal));
+        }
+    }
+    
+    /**
+     * Unregisters a player
+     */
+    public void removePlayer(UUID playerId) {
+        visitingPlayers.remove(playerId);
+        pendingChecks.remove(playerId);
+    }
+    
+    /**
+     * In event mode, check a player's current position on the next tick.
+     * Without this, a player already standing inside the target when the objective
+     * becomes current (accepting on the spot, relogging inside it) would have to move first.
+     */
+    private void scheduleCheck(UUID playerId) {
+        if (!eventMode || !pendingChecks.add(playerId)) {
+            return;
+        }
         
-        Location playerLocation = player.getLocation();
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            pendingChecks.remove(playerId);
+            if (!visitingPlayers.containsKey(playerId)) return;
+            
+            Player player = plugin.getServer().getPlayer(playerId);
+            if (player == null) return;
+            
+            player.getLocation(scratchLocation);
+            checkPlayerVisitObjectives(player, scratchLocation, grid);
+        });
+    }
+    
+    private boolean isOnVisitObjective(PlayerQuestState state) {
+        if (state.getStatus() != QuestStatus.ACTIVE) {
+            return false;
+        }
         
-        // Check world
-        if (!playerLocation.getWorld().getName().equals(targetLocation.getWorld().getName())) {
+        QuestDefinition quest = plugin.getQuestManager().getQuest(state.getQuestId());
+        if (quest == null) {
             return false;
         }
         
-        // Check distance
-        double distance = playerLocation.distance(targetLocation);
-        return distance <= objective.getVisitRadius();
+        Objective objective = quest.getCurrentObjective(state.getObjectiveIndex());
+        return objective != null && objective.getType() == ObjectiveType.VISIT;
+    }
+    
+    /**
+     * Check if a player at the given position has reached any visit objectives
+     */
+    private void checkPlayerVisitObjectives(Player player, Location location, VisitTargetGrid grid) {
+        if (location == null || location.getWorld() == null) return;
+        
+        double x = location.getX();
+        double y = location.getY();
+        double z = location.getZ();
+        
+        VisitTargetGrid.VisitTarget[] candidates = grid.getCandidates(location.getWorld().getName(), x, z);
+        if (candidates == null) return;
+        
+        UUID playerId = player.getUniqueId();
+        Set<String> advancedQuests = null;
+        
+        for (VisitTargetGrid.VisitTarget target : candidates) {
+            // Check if player is at the location
+            if (!target.contains(x, y, z)) continue;
+            
+            // One objective per quest per check, even if the next objective is a VISIT here too
+            if (advancedQuests != null && advancedQuests.contains(target.getQuestId())) continue;
+            
+            // Check the player is actually on this objective
+            PlayerQuestState state = plugin.getPlayerDataStore().getQuestState(playerId, target.getQuestId());
+            if (state == null || state.getStatus() != QuestStatus.ACTIVE
+                    || state.getObjectiveIndex() != target.getObjectiveIndex()) {
+                continue;
+            }
+            
+            QuestDefinition quest = plugin.getQuestManager().getQuest(target.getQuestId());
+            if (quest == null) continue;
+            
+            // Complete this objective
+            completeObjective(player, quest, state);
+            if (advancedQuests == null) {
+                advancedQuests = new HashSet<>();
+            }
+            advancedQuests.add(target.getQuestId());
+            
+            // Save progress
+            plugin.getPlayerDataStore().setQuestState(playerId, state);
+        }
     }
     
     /**
@@ -96,10 +228,27 @@ public class VisitObjectiveTracker extends BukkitRunnable {
     }
     
     /**
-     * Start the periodic checking task
+     * Start checking, either as a periodic task or by listening to player movement
      */
     public void start() {
-        long periodTicks = plugin.getConfig().getLong("visitCheck.periodTicks", 10);
-        this.runTaskTimer(plugin, periodTicks, periodTicks);
+        eventMode = !plugin.getConfig().getString("visitCheck.mode", "EVENT").equalsIgnoreCase("POLL");
+        
+        if (eventMode) {
+            plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        } else {
+            long periodTicks = plugin.getConfig().getLong("visitCheck.periodTicks", 10);
+            this.runTaskTimer(plugin, periodTicks, periodTicks);
+        }
+    }
+    
+    /**
+     * Stop checking
+     */
+    public void stop() {
+        if (eventMode) {
+            HandlerList.unregisterAll(this);
+        } else {
+            cancel();
+        }
     }
 }
@@ -0,0 +1,158 @@
+package com.aethor.aethorquests.tracker;
+
+import com.aethor.aethorquests.model.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable per-world uniform grid of VISIT objective targets.
+ * Every target is registered in each cell its radius touches, so checking a
+ * player is one cell lookup followed by squared-distance compares against the
+ * few targets in that cell. Lookups do not allocate.
+ */
+public class VisitTargetGrid {
+    
+    // Cells are 16x16 blocks (one chunk)
+    private static final int CELL_SHIFT = 4;
+    
+    public static final VisitTargetGrid EMPTY = new VisitTargetGrid(new HashMap<>());
+    
+    // World name -> grid of that world
+    private final Map<String, WorldGrid> worlds;
+    
+    private VisitTargetGrid(Map<String, WorldGrid> worlds) {
+        this.worlds = worlds;
+    }
+    
+    /**
+     * Compiles the VISIT objectives of all given quests into a grid
+     */
+    public static VisitTargetGrid compile(Collection<QuestDefinition> quests) {
+        Map<String, TreeMap<Long, List<VisitTarget>>> building = new HashMap<>();
+        
+        for (QuestDefinition quest : quests) {
+            List<Objective> objectives = quest.getObjectives();
+            for (int i = 0; i < objectives.size(); i++) {
+                Objective objective = objectives.get(i);
+                if (objective.getType() != ObjectiveType.VISIT || objective.getVisitWorld() == null) {
+                    continue;
+                }
+                
+                VisitTarget target = new VisitTarget(quest.getId(), i, objective);
+                double radius = objective.getVisitRadius();
+                
+                int minCellX = (int) Math.floor(target.x - radius) >> CELL_SHIFT;
+                int maxCellX = (int) Math.floor(target.x + radius) >> CELL_SHIFT;
+                int minCellZ = (int) Math.floor(target.z - radius) >> CELL_SHIFT;
+                int maxCellZ = (int) Math.floor(target.z + radius) >> CELL_SHIFT;
+                
+                TreeMap<Long, List<VisitTarget>> cells = building.computeIfAbsent(objective.getVisitWorld(), k -> new TreeMap<>());
+                for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                    for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                        cells.computeIfAbsent(cellKey(cellX, cellZ), k -> new ArrayList<>()).add(target);
+                    }
+                }
+            }
+        }
+        
+        Map<String, WorldGrid> worlds = new HashMap<>();
+        for (Map.Entry<String, TreeMap<Long, List<VisitTarget>>> entry : building.entrySet()) {
+            worlds.put(entry.getKey(), new WorldGrid(entry.getValue()));
+        }
+        return new VisitTargetGrid(worlds);
+    }
+    
+    /**
+     * Check if the grid has no targets at all
+     */
+    public boolean isEmpty() {
+        return worlds.isEmpty();
+    }
+    
+    /**
+     * Get the targets whose radius may contain the given position
+     *
+     * @return The candidate targets, or null if there are none
+     */
+    public VisitTarget[] getCandidates(String worldName, double x, double z) {
+        WorldGrid grid = worlds.get(worldName);
+        if (grid == null) {
+            return null;
+        }
+        return grid.get(cellKey((int) Math.floor(x) >> CELL_SHIFT, (int) Math.floor(z) >> CELL_SHIFT));
+    }
+    
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellZ << 32) | (cellX & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Cells of one world, stored as sorted keys for binary search
+     */
+    private static class WorldGrid {
+        private final long[] keys;
+        private final VisitTarget[][] cells;
+        
+        private WorldGrid(TreeMap<Long, List<VisitTarget>> sortedCells) {
+            this.keys = new long[sortedCells.size()];
+            this.cells = new VisitTarget[sortedCells.size()][];
+            
+            int i = 0;
+            for (Map.Entry<Long, List<VisitTarget>> entry : sortedCells.entrySet()) {
+                keys[i] = entry.getKey();
+                cells[i] = entry.getValue().toArray(new VisitTarget[0]);
+                i++;
+            }
+        }
+        
+        private VisitTarget[] get(long key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? cells[index] : null;
+        }
+    }
+    
+    /**
+     * A single VISIT objective with its squared radius precomputed
+     */
+    public static class VisitTarget {
+        private final String questId;
+        private final int objectiveIndex;
+        private final double x;
+        private final double y;
+        private final double z;
+        private final double radiusSquared;
+        
+        private VisitTarget(String questId, int objectiveIndex, Objective objective) {
+            this.questId = questId;
+            this.objectiveIndex = objectiveIndex;
+            this.x = objective.getVisitX();
+            this.y = objective.getVisitY();
+            this.z = objective.getVisitZ();
+            this.radiusSquared = objective.getVisitRadius() * objective.getVisitRadius();
+        }
+        
+        public String getQuestId() {
+            return questId;
+        }
+        
+        public int getObjectiveIndex() {
+            return objectiveIndex;
+        }
+        
+        /**
+         * Check if a position is within the target radius
+         */
+        public boolean contains(double px, double py, double pz) {
+            double dx = px - x;
+            double dy = py - y;
+            double dz = pz - z;
+            return dx * dx + dy * dy + dz * dz <= radiusSquared;
+        }
+    }
+}
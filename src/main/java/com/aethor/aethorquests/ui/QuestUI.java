@@ -416,13 +416,7 @@ public class QuestUI {
         }
         
         // Check required quests
-        for (String requiredQuestId : req.getRequiredQuestsCompleted()) {
-            if (!plugin.getPlayerDataStore().hasCompletedQuest(playerId, requiredQuestId)) {
-                return false;
-            }
-        }
-        
-        return true;
+        return plugin.getPlayerDataStore().hasCompletedRequiredQuests(playerId, req);
     }
     
     private int getObjectiveRequirement(Objective objective) {